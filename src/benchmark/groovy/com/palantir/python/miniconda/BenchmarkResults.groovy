@@ -0,0 +1,58 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import groovy.json.JsonOutput
+
+/**
+ * Collects benchmark samples and writes them as JSON, one file per run, so that results can be compared across
+ * releases.
+ *
+ * @author agent
+ */
+class BenchmarkResults {
+    private final File resultsFile
+    private final String version
+    private final List<Map<String, Object>> results = []
+
+    BenchmarkResults(File resultsFile, String version) {
+        this.resultsFile = resultsFile
+        this.version = version
+    }
+
+    synchronized void add(String benchmark, Map<String, Object> parameters, List<Long> samplesMillis) {
+        results << [
+                benchmark    : benchmark,
+                parameters   : parameters,
+                samplesMillis: samplesMillis,
+                meanMillis   : samplesMillis.sum() / samplesMillis.size(),
+                minMillis    : samplesMillis.min(),
+                maxMillis    : samplesMillis.max(),
+        ]
+    }
+
+    synchronized void write() {
+        resultsFile.parentFile.mkdirs()
+        resultsFile.text = JsonOutput.prettyPrint(JsonOutput.toJson([
+                version  : version,
+                timestamp: new Date().time,
+                java     : System.getProperty('java.version'),
+                os       : System.getProperty('os.name'),
+                results  : results,
+        ]))
+    }
+}
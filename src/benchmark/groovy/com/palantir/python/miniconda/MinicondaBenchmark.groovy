@@ -0,0 +1,210 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import org.gradle.testkit.runner.GradleRunner
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Benchmarks of the plugin's own overhead: configuration time, no-op build time and the cost of each task's
+ * up-to-date check, for builds with a growing number of subprojects.
+ *
+ * <p>Builds use a fake {@code conda} that only creates the requested prefix and a bootstrap directory marked as
+ * installed, so the benchmarks run offline and measure Gradle and the plugin rather than conda. Results are written to
+ * the file named by the {@code benchmark.resultsFile} system property. Run with {@code ./gradlew benchmark}.
+ *
+ * @author agent
+ */
+class MinicondaBenchmark extends Specification {
+    private static final int WARMUP_RUNS = 2
+    private static final int MEASURED_RUNS = 5
+    private static final String MINICONDA_VERSION = '3.18.3'
+    private static final String FAKE_CONDA = '''#!/bin/sh
+root="$(cd "$(dirname "$0")/.." && pwd)"
+prefix=""
+command="$1"
+while [ $# -gt 0 ]; do
+    case "$1" in
+        -p|--prefix) prefix="$2"; shift ;;
+    esac
+    shift
+done
+if [ -n "$prefix" ]; then
+    mkdir -p "$prefix/bin" "$prefix/conda-meta"
+elif [ "$command" = "install" ]; then
+    mkdir -p "$root/conda-meta"
+    touch "$root/conda-meta/conda-build-2.1.9-py27_0.json"
+fi
+exit 0
+'''
+    private static final String TIMING_INIT_SCRIPT = '''
+import java.util.concurrent.ConcurrentHashMap
+
+def timings = new File(System.getProperty('benchmark.taskTimings'))
+def starts = new ConcurrentHashMap<Task, Long>()
+gradle.addListener(new TaskExecutionListener() {
+    void beforeExecute(Task task) {
+        starts.put(task, System.nanoTime())
+    }
+
+    void afterExecute(Task task, TaskState state) {
+        long nanos = System.nanoTime() - starts.remove(task)
+        synchronized (timings) {
+            timings << "${task.name} ${state.skipMessage == 'UP-TO-DATE'} ${nanos}\\n"
+        }
+    }
+})
+'''
+
+    @Shared
+    private BenchmarkResults results = new BenchmarkResults(
+            new File(System.getProperty('benchmark.resultsFile', 'build/reports/benchmarks/results.json')),
+            System.getProperty('benchmark.version', 'unspecified'))
+
+    // use a temp dir with a short name, like the functional tests
+    private File projectDir = Files.createTempDirectory("miniconda").toFile()
+    private File timings = new File(projectDir, 'task-timings.txt')
+
+    def cleanup() {
+        projectDir.deleteDir()
+    }
+
+    def cleanupSpec() {
+        results.write()
+    }
+
+    @Unroll
+    def 'configuration time with #subprojects subprojects'() {
+        given:
+        createBuild(subprojects)
+
+        when:
+        List<Long> samples = measure { run('help') }
+        results.add('configuration', [subprojects: subprojects], samples)
+
+        then:
+        samples.size() == MEASURED_RUNS
+
+        where:
+        subprojects << subprojectCounts()
+    }
+
+    @Unroll
+    def 'no-op build time with #subprojects subprojects'() {
+        given:
+        createBuild(subprojects)
+        run('setupPython', 'condaBuildCheck')
+
+        when:
+        List<Long> samples = measure { run('setupPython', 'condaBuildCheck') }
+        results.add('noOpBuild', [subprojects: subprojects], samples)
+
+        then:
+        samples.size() == MEASURED_RUNS
+
+        where:
+        subprojects << subprojectCounts()
+    }
+
+    @Unroll
+    def 'up-to-date check cost with #subprojects subprojects'() {
+        given:
+        createBuild(subprojects)
+        run('setupPython', 'condaBuildCheck')
+        timings.delete()
+
+        when:
+        MEASURED_RUNS.times { run('setupPython', 'condaBuildCheck') }
+        Map<String, List<Long>> upToDateChecks = [:].withDefault { [] }
+        timings.eachLine { line ->
+            String[] fields = line.split(' ')
+            if (fields[1] == 'true') {
+                upToDateChecks[fields[0]] << (fields[2] as long).intdiv(1000000L)
+            }
+        }
+        upToDateChecks.each { task, samples ->
+            results.add('upToDateCheck', [subprojects: subprojects, task: task], samples)
+        }
+
+        then:
+        upToDateChecks.containsKey('setupPython')
+
+        where:
+        subprojects << subprojectCounts()
+    }
+
+    private static List<Integer> subprojectCounts() {
+        return System.getProperty('benchmark.subprojects', '1,10,100,500').split(',').collect { it.trim() as int }
+    }
+
+    private List<Long> measure(Closure<?> action) {
+        WARMUP_RUNS.times { action() }
+        return (1..MEASURED_RUNS).collect {
+            long start = System.nanoTime()
+            action()
+            return (System.nanoTime() - start).intdiv(1000000L)
+        }
+    }
+
+    private void run(String... tasks) {
+        File initScript = new File(projectDir, 'timings.gradle')
+        initScript.text = TIMING_INIT_SCRIPT
+        List<String> arguments = tasks as List<String>
+        arguments += ['--init-script', initScript.absolutePath, "-Dbenchmark.taskTimings=${timings.absolutePath}"]
+        GradleRunner.create()
+                .withProjectDir(projectDir)
+                .withArguments(arguments)
+                .withPluginClasspath()
+                .build()
+    }
+
+    private void createBuild(int subprojects) {
+        File bootstrapPrefix = new File(projectDir, 'bootstrap')
+        File bootstrapDirectory = new File(bootstrapPrefix, "python-2/miniconda-${MINICONDA_VERSION}")
+        File conda = new File(bootstrapDirectory, 'bin/conda')
+        conda.parentFile.mkdirs()
+        conda.text = FAKE_CONDA
+        conda.setExecutable(true)
+        new File(bootstrapDirectory, '.miniconda-installed').text = ''
+
+        List<String> names = (0..<subprojects).collect { "p${it}" }
+        new File(projectDir, 'settings.gradle').text = "include ${names.collect { "'${it}'" }.join(', ')}\n"
+        new File(projectDir, 'build.gradle').text = """
+            plugins {
+                id 'com.palantir.python.miniconda' apply false
+            }
+
+            subprojects {
+                apply plugin: 'com.palantir.python.miniconda'
+
+                miniconda {
+                    bootstrapDirectoryPrefix = new File('${bootstrapPrefix.absolutePath}')
+                    minicondaVersion = '${MINICONDA_VERSION}'
+                    packages = ['python', 'numpy']
+                }
+            }
+        """
+        names.each { name ->
+            File recipe = new File(projectDir, "${name}/conda_recipe/meta.yaml")
+            recipe.parentFile.mkdirs()
+            recipe.text = "package:\n  name: ${name}\n  version: 1.0\n"
+        }
+    }
+}
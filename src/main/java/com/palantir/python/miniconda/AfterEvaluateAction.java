@@ -20,13 +20,25 @@ import com.palantir.python.miniconda.tasks.BootstrapPython;
 import com.palantir.python.miniconda.tasks.CondaBuild;
 import com.palantir.python.miniconda.tasks.CondaBuildCheck;
 import com.palantir.python.miniconda.tasks.ConfigureRootCondaEnv;
+import com.palantir.python.miniconda.tasks.InstallPipPackages;
+import com.palantir.python.miniconda.tasks.LockCondaEnvironment;
+import com.palantir.python.miniconda.tasks.PackCondaEnvironment;
+import com.palantir.python.miniconda.tasks.PruneEnvironmentCache;
 import com.palantir.python.miniconda.tasks.SetupCondaBuild;
+import com.palantir.python.miniconda.tasks.SetupCondaEnvironments;
 import com.palantir.python.miniconda.tasks.SetupPython;
+import com.palantir.python.miniconda.tasks.VerifyCondaEnvironment;
+import java.io.File;
+import java.io.IOException;
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.ResolvableDependencies;
 import org.gradle.internal.os.OperatingSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Handles work for {@link Project#afterEvaluate(Action)} to act upon the {@link MinicondaExtension} configuration.
@@ -34,33 +46,52 @@ import org.gradle.internal.os.OperatingSystem;
  * @author mnazbro
  */
 public final class AfterEvaluateAction implements Action<Project> {
+    private static final Logger LOG = LoggerFactory.getLogger(AfterEvaluateAction.class);
+
+    private static final String BUILD_SCAN_EXTENSION = "buildScan";
+    private static final String TIMINGS_REPORT_DIRECTORY = "reports/miniconda";
 
     private final OperatingSystem os;
     private final Configuration configuration;
     private final BootstrapPython bootstrapPython;
     private final ConfigureRootCondaEnv configureRootCondaEnv;
+    private final LockCondaEnvironment lockCondaEnvironment;
     private final SetupPython setupPython;
+    private final InstallPipPackages installPipPackages;
+    private final PackCondaEnvironment packCondaEnvironment;
+    private final VerifyCondaEnvironment verifyCondaEnvironment;
     private final SetupCondaBuild setupCondaBuild;
     private final CondaBuildCheck condaBuildCheck;
     private final CondaBuild condaBuild;
+    private final PruneEnvironmentCache pruneEnvironmentCache;
 
     public AfterEvaluateAction(
             OperatingSystem os,
             Configuration configuration,
             BootstrapPython bootstrapPython,
             ConfigureRootCondaEnv configureRootCondaEnv,
+            LockCondaEnvironment lockCondaEnvironment,
             SetupPython setupPython,
+            InstallPipPackages installPipPackages,
+            PackCondaEnvironment packCondaEnvironment,
+            VerifyCondaEnvironment verifyCondaEnvironment,
             SetupCondaBuild setupCondaBuild,
             CondaBuildCheck condaBuildCheck,
-            CondaBuild condaBuild) {
+            CondaBuild condaBuild,
+            PruneEnvironmentCache pruneEnvironmentCache) {
         this.os = os;
         this.configuration = configuration;
         this.bootstrapPython = bootstrapPython;
         this.configureRootCondaEnv = configureRootCondaEnv;
+        this.lockCondaEnvironment = lockCondaEnvironment;
         this.setupPython = setupPython;
+        this.installPipPackages = installPipPackages;
+        this.packCondaEnvironment = packCondaEnvironment;
+        this.verifyCondaEnvironment = verifyCondaEnvironment;
         this.setupCondaBuild = setupCondaBuild;
         this.condaBuildCheck = condaBuildCheck;
         this.condaBuild = condaBuild;
+        this.pruneEnvironmentCache = pruneEnvironmentCache;
     }
 
     @Override
@@ -69,12 +100,64 @@ public final class AfterEvaluateAction implements Action<Project> {
         miniconda.validate();
 
         addMinicondaInstallerDependency(project, miniconda);
-        bootstrapPython.configureAfterEvaluate(miniconda, configuration.getSingleFile(), os);
+        if (configuration.getDependencies().isEmpty()) {
+            MinicondaInstaller installer = new MinicondaInstaller(os, miniconda);
+            bootstrapPython.configureAfterEvaluate(miniconda, installer.createDownloader(), os);
+        } else {
+            // a custom minicondaInstaller dependency is resolved through the configured repositories, but only once
+            // bootstrapPython actually runs
+            bootstrapPython.configureAfterEvaluate(miniconda, configuration, os);
+        }
         configureRootCondaEnv.configureAfterEvaluate(miniconda);
+        lockCondaEnvironment.configureAfterEvaluate(miniconda);
         setupPython.configureAfterEvaluate(miniconda);
+        if (miniconda.getUseLockFile()) {
+            setupPython.dependsOn(lockCondaEnvironment);
+        }
+        installPipPackages.configureAfterEvaluate(miniconda);
+        packCondaEnvironment.configureAfterEvaluate(miniconda);
+        verifyCondaEnvironment.configureAfterEvaluate(miniconda);
         setupCondaBuild.configureAfterEvaluate(miniconda);
         condaBuildCheck.configureAfterEvaluate(miniconda);
         condaBuild.configureAfterEvaluate(miniconda);
+        pruneEnvironmentCache.configureAfterEvaluate(miniconda);
+        for (SetupCondaEnvironments task : project.getTasks().withType(SetupCondaEnvironments.class)) {
+            task.configureAfterEvaluate(miniconda);
+        }
+        if (miniconda.getUseCondaWorker()) {
+            stopCondaWorkersWhenBuildFinishes(project);
+        }
+        reportTimingsWhenBuildFinishes(project, miniconda.getTimings());
+        // finish deleting environments whose deletion was cut short when an earlier build process exited
+        Trash.sweep(miniconda.getBuildEnvironmentDirectory().getAbsoluteFile().getParentFile().toPath());
+        Trash.sweep(miniconda.getWritableBootstrapDirectory().getAbsoluteFile().getParentFile().toPath());
+    }
+
+    private static void reportTimingsWhenBuildFinishes(final Project project, final CondaTimings timings) {
+        Object buildScan = project.getRootProject().getExtensions().findByName(BUILD_SCAN_EXTENSION);
+        if (buildScan != null) {
+            timings.publishTo(buildScan);
+        }
+        project.getGradle().addBuildListener(new BuildAdapter() {
+            @Override
+            public void buildFinished(BuildResult result) {
+                File reportDirectory = new File(project.getBuildDir(), TIMINGS_REPORT_DIRECTORY);
+                try {
+                    timings.writeReport(reportDirectory);
+                } catch (IOException e) {
+                    LOG.warn("Failed to write conda timings report to {}", reportDirectory, e);
+                }
+            }
+        });
+    }
+
+    private static void stopCondaWorkersWhenBuildFinishes(Project project) {
+        project.getGradle().addBuildListener(new BuildAdapter() {
+            @Override
+            public void buildFinished(BuildResult result) {
+                CondaWorker.stopAll();
+            }
+        });
     }
 
     private void addMinicondaInstallerDependency(final Project project, final MinicondaExtension miniconda) {
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import com.palantir.python.miniconda.tasks.BootstrapPython;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides whether a Miniconda install in a read-only bootstrap prefix, e.g. one baked into a container image, can be
+ * used instead of installing Miniconda for the current user.
+ *
+ * <p>An install qualifies if it is complete and every file of its packages still matches the
+ * {@link EnvironmentManifest} written when it was installed. Verifying reads the metadata of every file, so results,
+ * including failed verifications, are cached for the lifetime of the daemon until the manifest changes.
+ *
+ * @author agent
+ */
+public final class BootstrapVerifier {
+    private static final Logger LOG = LoggerFactory.getLogger(BootstrapVerifier.class);
+
+    private static final ConcurrentMap<String, Verification> VERIFICATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Returns whether {@code bootstrapDirectory} holds a complete install whose packages were not modified since.
+     */
+    public static boolean isVerified(File bootstrapDirectory) {
+        if (!BootstrapPython.isInstalled(bootstrapDirectory)) {
+            return false;
+        }
+        File manifest = EnvironmentManifest.getFile(bootstrapDirectory);
+        long lastModified = manifest.lastModified();
+        if (lastModified == 0L) {
+            LOG.info("Not using Miniconda install {}: it has no manifest", bootstrapDirectory);
+            return false;
+        }
+        if (!EnvironmentManifest.isCurrent(bootstrapDirectory.toPath())) {
+            LOG.warn("Not using Miniconda install {}: its packages changed since its manifest was written",
+                    bootstrapDirectory);
+            return false;
+        }
+        String key = bootstrapDirectory.getAbsolutePath();
+        Verification cached = VERIFICATIONS.get(key);
+        if (cached != null && cached.manifestLastModified == lastModified) {
+            LOG.debug("Miniconda install {} was already verified: {}", bootstrapDirectory, cached.verified);
+            return cached.verified;
+        }
+
+        boolean verified;
+        try {
+            List<String> modified = EnvironmentManifest.findModifiedPackages(
+                    bootstrapDirectory.toPath(), Runtime.getRuntime().availableProcessors());
+            verified = modified.isEmpty();
+            if (verified) {
+                LOG.info("Using verified Miniconda install {}", bootstrapDirectory);
+            } else {
+                LOG.warn("Not using Miniconda install {}: files of packages {} were modified",
+                        bootstrapDirectory, modified);
+            }
+        } catch (IOException e) {
+            // not cached, the failure may be transient
+            LOG.warn("Not using Miniconda install {}: it could not be verified", bootstrapDirectory, e);
+            return false;
+        }
+        VERIFICATIONS.put(key, new Verification(lastModified, verified));
+        return verified;
+    }
+
+    private static final class Verification {
+        private final long manifestLastModified;
+        private final boolean verified;
+
+        private Verification(long manifestLastModified, boolean verified) {
+            this.manifestLastModified = manifestLastModified;
+            this.verified = verified;
+        }
+    }
+
+    private BootstrapVerifier() {}
+}
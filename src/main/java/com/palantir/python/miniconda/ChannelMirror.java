@@ -0,0 +1,182 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local conda channel populated with the packages that bootstrap installs have already downloaded, so that later
+ * environments can be created from disk instead of from remote channels.
+ *
+ * <p>The channel has the standard layout of {@code <subdir>/<package>.tar.bz2} plus a generated
+ * {@code <subdir>/repodata.json}. The repodata entry of each package is derived from the {@code info/index.json} conda
+ * extracted next to the downloaded tarball and kept in {@code <subdir>/.index}, so the index can be regenerated without
+ * unpacking archives.
+ *
+ * @author agent
+ */
+public final class ChannelMirror {
+    private static final Logger LOG = LoggerFactory.getLogger(ChannelMirror.class);
+
+    private static final String PACKAGE_SUFFIX = ".tar.bz2";
+    private static final String REPODATA = "repodata.json";
+    private static final String INDEX_DIRECTORY = ".index";
+    private static final String NOARCH = "noarch";
+    private static final String LOCK_FILE = ".lock";
+    private static final Pattern SUBDIR = Pattern.compile("\"subdir\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final File root;
+    private final String platformSubdir;
+
+    public ChannelMirror(File root, String platformSubdir) {
+        this.root = root;
+        this.platformSubdir = platformSubdir;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the channel URL to pass to conda.
+     */
+    public String getUrl() {
+        return root.toURI().toString();
+    }
+
+    /**
+     * Returns whether the mirror has been populated at least once and can therefore be used as a channel.
+     */
+    public boolean exists() {
+        return new File(new File(root, platformSubdir), REPODATA).isFile();
+    }
+
+    /**
+     * Adds every package downloaded into {@code packageCache} (a conda {@code pkgs} directory) that is not yet
+     * mirrored, then regenerates the repodata of the affected subdirectories.
+     *
+     * @return the number of packages added
+     */
+    public int update(File packageCache) throws IOException {
+        try (CrossProcessLock ignored = CrossProcessLock.acquire(new File(root, LOCK_FILE))) {
+            Set<String> touchedSubdirs = new TreeSet<>();
+            for (String subdir : Arrays.asList(platformSubdir, NOARCH)) {
+                // conda expects both the platform and the noarch index of a channel to exist
+                if (!new File(new File(root, subdir), REPODATA).isFile()) {
+                    touchedSubdirs.add(subdir);
+                }
+            }
+            int added = 0;
+            File[] tarballs = packageCache.listFiles();
+            if (tarballs != null) {
+                for (File tarball : tarballs) {
+                    String subdir = addPackage(tarball);
+                    if (subdir != null) {
+                        touchedSubdirs.add(subdir);
+                        added++;
+                    }
+                }
+            }
+            for (String subdir : touchedSubdirs) {
+                writeRepodata(subdir);
+            }
+            LOG.info("Added {} packages to local conda channel {}", added, root);
+            return added;
+        }
+    }
+
+    private String addPackage(File tarball) throws IOException {
+        String fileName = tarball.getName();
+        if (!tarball.isFile() || !fileName.endsWith(PACKAGE_SUFFIX)) {
+            return null;
+        }
+        String distribution = fileName.substring(0, fileName.length() - PACKAGE_SUFFIX.length());
+        Path indexJson = new File(tarball.getParentFile(), distribution).toPath().resolve("info/index.json");
+        if (!Files.isRegularFile(indexJson)) {
+            LOG.debug("Not mirroring {}: it has not been extracted", tarball);
+            return null;
+        }
+
+        String index = new String(Files.readAllBytes(indexJson), StandardCharsets.UTF_8).trim();
+        Matcher subdirMatcher = SUBDIR.matcher(index);
+        String subdir = subdirMatcher.find() ? subdirMatcher.group(1) : platformSubdir;
+        Path entry = new File(new File(new File(root, subdir), INDEX_DIRECTORY), fileName + ".json").toPath();
+        if (Files.exists(entry)) {
+            return null;
+        }
+
+        Path destination = new File(new File(root, subdir), fileName).toPath();
+        Files.createDirectories(entry.getParent());
+        Files.copy(tarball.toPath(), destination, StandardCopyOption.REPLACE_EXISTING);
+
+        int closingBrace = index.lastIndexOf('}');
+        if (closingBrace < 0) {
+            throw new IOException("Malformed package index " + indexJson);
+        }
+        String fields = index.substring(0, closingBrace).trim();
+        String separator = fields.endsWith("{") ? "" : ",";
+        String record = fields + separator + "\n  \"md5\": \"" + Hashes.md5(destination) + "\",\n  \"size\": "
+                + Files.size(destination) + "\n}";
+        Files.write(entry, record.getBytes(StandardCharsets.UTF_8));
+        return subdir;
+    }
+
+    private void writeRepodata(String subdir) throws IOException {
+        File subdirDirectory = new File(root, subdir);
+        Files.createDirectories(subdirDirectory.toPath());
+        File[] entries = new File(subdirDirectory, INDEX_DIRECTORY).listFiles();
+
+        StringBuilder repodata = new StringBuilder();
+        repodata.append("{\n\"info\": {\"subdir\": \"").append(subdir).append("\"},\n\"packages\": {");
+        boolean first = true;
+        if (entries != null) {
+            Arrays.sort(entries);
+            for (File entry : entries) {
+                String name = entry.getName();
+                if (!name.endsWith(PACKAGE_SUFFIX + ".json")) {
+                    continue;
+                }
+                String tarballName = name.substring(0, name.length() - ".json".length());
+                List<String> lines = Files.readAllLines(entry.toPath(), StandardCharsets.UTF_8);
+                repodata.append(first ? "\n" : ",\n").append('"').append(tarballName).append("\": ");
+                for (String line : lines) {
+                    repodata.append(line).append('\n');
+                }
+                first = false;
+            }
+        }
+        repodata.append("}\n}\n");
+
+        Path temporary = new File(subdirDirectory, REPODATA + ".tmp").toPath();
+        Files.write(temporary, repodata.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, new File(subdirDirectory, REPODATA).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
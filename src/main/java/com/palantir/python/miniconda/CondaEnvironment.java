@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import org.gradle.api.Named;
+
+/**
+ * A named conda environment declared in {@code miniconda.environments}, in addition to the build environment.
+ *
+ * @author agent
+ */
+public final class CondaEnvironment implements Named {
+    private final String name;
+    private final MinicondaExtension miniconda;
+
+    private List<String> packages = new ArrayList<>();
+    private File directory = null;
+
+    public CondaEnvironment(String name, MinicondaExtension miniconda) {
+        this.name = Objects.requireNonNull(name, "name must not be null");
+        this.miniconda = Objects.requireNonNull(miniconda, "miniconda must not be null");
+    }
+
+    /**
+     * Returns the packages installed in all of {@code environments}, in the order of the first environment. These are
+     * installed once into a shared environment the others are cloned from.
+     */
+    public static List<String> getSharedPackages(Collection<CondaEnvironment> environments) {
+        if (environments.size() < 2) {
+            return new ArrayList<>();
+        }
+        Iterator<CondaEnvironment> iterator = environments.iterator();
+        List<String> shared = new ArrayList<>(iterator.next().getPackages());
+        while (iterator.hasNext()) {
+            shared.retainAll(iterator.next().getPackages());
+        }
+        return shared;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getPackages() {
+        return packages;
+    }
+
+    public void setPackages(List<String> packages) {
+        this.packages = packages;
+    }
+
+    public File getDirectory() {
+        if (directory == null) {
+            return new File(miniconda.getEnvironmentsDirectory(), name);
+        }
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        setDirectory(new File(directory));
+    }
+
+    public void setDirectory(Path directory) {
+        setDirectory(directory.toFile());
+    }
+
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+}
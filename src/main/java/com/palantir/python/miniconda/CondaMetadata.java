@@ -0,0 +1,110 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads which packages are installed in a conda prefix from its {@code conda-meta} directory, without starting Python.
+ *
+ * <p>Conda records every linked package as {@code conda-meta/<name>-<version>-<build>.json}. Versions and build
+ * strings never contain dashes, so the file names alone identify the installed packages. Parsed listings are cached
+ * for the lifetime of the daemon and invalidated whenever the directory's modification time or its file names
+ * change, as modification times are too coarse to tell apart an install and a check within the same second.
+ *
+ * @author agent
+ */
+public final class CondaMetadata {
+    private static final Logger LOG = LoggerFactory.getLogger(CondaMetadata.class);
+
+    private static final String CONDA_META_DIRECTORY = "conda-meta";
+    private static final String METADATA_SUFFIX = ".json";
+    private static final ConcurrentMap<String, Listing> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the installed packages of {@code prefix} mapped to their versions, or {@code null} if they cannot be
+     * determined unambiguously from the metadata, in which case callers should ask conda itself.
+     */
+    public static Map<String, String> getInstalledPackages(File prefix) {
+        File condaMeta = new File(prefix, CONDA_META_DIRECTORY);
+        long lastModified = condaMeta.lastModified();
+        if (lastModified == 0L) {
+            return null;
+        }
+
+        String[] fileNames = condaMeta.list();
+        if (fileNames == null) {
+            return null;
+        }
+        Arrays.sort(fileNames);
+
+        String cacheKey = condaMeta.getAbsolutePath();
+        Listing cached = CACHE.get(cacheKey);
+        if (cached != null && cached.lastModified == lastModified && Arrays.equals(cached.fileNames, fileNames)) {
+            return cached.packages;
+        }
+
+        Map<String, String> packages = readPackages(condaMeta, fileNames);
+        CACHE.put(cacheKey, new Listing(lastModified, fileNames, packages));
+        return packages;
+    }
+
+    private static Map<String, String> readPackages(File condaMeta, String[] fileNames) {
+        Map<String, String> packages = new TreeMap<>();
+        for (String fileName : fileNames) {
+            if (!fileName.endsWith(METADATA_SUFFIX)) {
+                continue;
+            }
+            String distribution = fileName.substring(0, fileName.length() - METADATA_SUFFIX.length());
+            int buildSeparator = distribution.lastIndexOf('-');
+            int versionSeparator = buildSeparator > 0 ? distribution.lastIndexOf('-', buildSeparator - 1) : -1;
+            if (versionSeparator <= 0) {
+                LOG.debug("Unrecognized conda metadata file {} in {}", fileName, condaMeta);
+                return null;
+            }
+            String name = distribution.substring(0, versionSeparator);
+            String version = distribution.substring(versionSeparator + 1, buildSeparator);
+            if (packages.put(name, version) != null) {
+                LOG.debug("Package {} is recorded more than once in {}", name, condaMeta);
+                return null;
+            }
+        }
+        return Collections.unmodifiableMap(packages);
+    }
+
+    private static final class Listing {
+        private final long lastModified;
+        private final String[] fileNames;
+        private final Map<String, String> packages;
+
+        Listing(long lastModified, String[] fileNames, Map<String, String> packages) {
+            this.lastModified = lastModified;
+            this.fileNames = fileNames;
+            this.packages = packages;
+        }
+    }
+
+    private CondaMetadata() {}
+}
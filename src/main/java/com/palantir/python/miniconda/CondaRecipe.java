@@ -0,0 +1,135 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The parts of a conda recipe's {@code meta.yaml} the plugin needs without rendering it: the package name, the
+ * packages it requires and the local sources it is built from.
+ *
+ * <p>The file is read line by line rather than as YAML, since recipes are Jinja templates that are frequently not
+ * valid YAML before rendering. Values that contain template expressions are ignored.
+ *
+ * @author agent
+ */
+public final class CondaRecipe {
+    private static final Logger LOG = LoggerFactory.getLogger(CondaRecipe.class);
+
+    private static final String META_YAML = "meta.yaml";
+    private static final Pattern SECTION = Pattern.compile("^(\\w+):.*$");
+    private static final Pattern NAME = Pattern.compile("^\\s+name:\\s*['\"]?([^'\"#\\s]+)['\"]?\\s*(?:#.*)?$");
+    private static final Pattern SOURCE_PATH = Pattern.compile("^\\s+(?:-\\s+)?path:\\s*['\"]?([^'\"#]+?)['\"]?\\s*$");
+    private static final Pattern REQUIREMENT = Pattern.compile("^\\s+-\\s+['\"]?([A-Za-z0-9_.\\-]+).*$");
+
+    private final File directory;
+    private final String packageName;
+    private final Set<String> requirements;
+    private final List<File> sourcePaths;
+
+    private CondaRecipe(File directory, String packageName, Set<String> requirements, List<File> sourcePaths) {
+        this.directory = directory;
+        this.packageName = packageName;
+        this.requirements = Collections.unmodifiableSet(requirements);
+        this.sourcePaths = Collections.unmodifiableList(sourcePaths);
+    }
+
+    /**
+     * Parses the recipe at {@code recipe}, which may be either the recipe directory or its {@code meta.yaml}. Missing
+     * or unreadable recipes yield an empty description, leaving it to conda-build to report the problem.
+     */
+    public static CondaRecipe parse(File recipe) {
+        File directory = recipe.isFile() ? recipe.getParentFile() : recipe;
+        File metaYaml = recipe.isFile() ? recipe : new File(recipe, META_YAML);
+        String packageName = null;
+        Set<String> requirements = new TreeSet<>();
+        List<File> sourcePaths = new ArrayList<>();
+        if (!metaYaml.isFile()) {
+            return new CondaRecipe(directory, packageName, requirements, sourcePaths);
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(metaYaml.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.warn("Failed to read {}", metaYaml, e);
+            return new CondaRecipe(directory, packageName, requirements, sourcePaths);
+        }
+
+        String section = null;
+        for (String line : lines) {
+            Matcher sectionMatcher = SECTION.matcher(line);
+            if (sectionMatcher.matches()) {
+                section = sectionMatcher.group(1);
+                continue;
+            }
+            if (line.contains("{{")) {
+                continue;
+            }
+
+            Matcher name = NAME.matcher(line);
+            Matcher path = SOURCE_PATH.matcher(line);
+            Matcher requirement = REQUIREMENT.matcher(line);
+            if ("package".equals(section) && name.matches()) {
+                packageName = name.group(1);
+            } else if ("source".equals(section) && path.matches()) {
+                sourcePaths.add(directory.toPath().resolve(path.group(1)).normalize().toFile());
+            } else if ("requirements".equals(section) && requirement.matches()) {
+                requirements.add(requirement.group(1));
+            }
+        }
+        LOG.debug("Parsed recipe {}: package {}, requirements {}", directory, packageName, requirements);
+        return new CondaRecipe(directory, packageName, requirements, sourcePaths);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the name of the package built by this recipe, or {@code null} if it is templated or missing.
+     */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * Returns the names of all build and run requirements of this recipe.
+     */
+    public Set<String> getRequirements() {
+        return requirements;
+    }
+
+    /**
+     * Returns the local directories referenced by {@code source: path:} entries, resolved against the recipe.
+     */
+    public List<File> getSourcePaths() {
+        return sourcePaths;
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records how long the phases of the conda operations of one project take, e.g. downloading the installer or solving,
+ * fetching and linking an environment, and writes them as a JSON and an HTML report once the build finishes.
+ *
+ * <p>Phases can additionally be published as custom values of a build scan.
+ *
+ * @author agent
+ */
+public final class CondaTimings {
+    private static final Logger LOG = LoggerFactory.getLogger(CondaTimings.class);
+
+    private static final String JSON_REPORT = "timings.json";
+    private static final String HTML_REPORT = "timings.html";
+
+    private final String projectPath;
+    private final List<Entry> entries = Collections.synchronizedList(new ArrayList<Entry>());
+    private volatile Object buildScan;
+
+    public CondaTimings(String projectPath) {
+        this.projectPath = projectPath;
+    }
+
+    /**
+     * Starts timing {@code phase} of {@code task}; the phase is recorded when the returned handle is closed.
+     */
+    public Phase start(String task, String phase) {
+        return start(task, phase, null);
+    }
+
+    /**
+     * Starts timing {@code phase} of {@code task} working on {@code subject}, e.g. the recipe being built.
+     */
+    public Phase start(String task, String phase, String subject) {
+        return new Phase(task, phase, subject, System.currentTimeMillis());
+    }
+
+    public void record(String task, String phase, String subject, long startMillis, long durationMillis) {
+        Entry entry = new Entry(task, phase, subject, startMillis, durationMillis);
+        entries.add(entry);
+        LOG.info("{} {}{} took {} ms", task, phase, subject == null ? "" : " of " + subject, durationMillis);
+        publish(entry);
+    }
+
+    public List<Entry> getEntries() {
+        synchronized (entries) {
+            return Collections.unmodifiableList(new ArrayList<>(entries));
+        }
+    }
+
+    /**
+     * Publishes every phase recorded from now on as a custom value of {@code buildScan}, the extension of the Gradle
+     * build scan plugin.
+     */
+    public void publishTo(Object buildScan) {
+        this.buildScan = buildScan;
+    }
+
+    private void publish(Entry entry) {
+        Object scan = buildScan;
+        if (scan == null) {
+            return;
+        }
+        try {
+            Method value = scan.getClass().getMethod("value", String.class, String.class);
+            value.invoke(scan, "miniconda " + entry.getTask() + " " + entry.getPhase()
+                    + (entry.getSubject() == null ? "" : " " + entry.getSubject()), entry.getDurationMillis() + " ms");
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOG.debug("Failed to publish conda timings to the build scan", e);
+        }
+    }
+
+    /**
+     * Writes {@code timings.json} and {@code timings.html} into {@code directory} if any phase was recorded.
+     */
+    public void writeReport(File directory) throws IOException {
+        List<Entry> recorded = getEntries();
+        if (recorded.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(directory.toPath());
+        Files.write(new File(directory, JSON_REPORT).toPath(), toJson(recorded).getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, HTML_REPORT).toPath(), toHtml(recorded).getBytes(StandardCharsets.UTF_8));
+        LOG.info("Wrote conda timings report to {}", directory);
+    }
+
+    private String toJson(List<Entry> recorded) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"project\": ").append(jsonString(projectPath)).append(",\n  \"phases\": [");
+        for (int i = 0; i < recorded.size(); i++) {
+            Entry entry = recorded.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"task\": ").append(jsonString(entry.getTask()))
+                    .append(", \"phase\": ").append(jsonString(entry.getPhase()))
+                    .append(", \"subject\": ").append(jsonString(entry.getSubject()))
+                    .append(", \"start\": ").append(entry.getStartMillis())
+                    .append(", \"durationMillis\": ").append(entry.getDurationMillis()).append('}');
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    private String toHtml(List<Entry> recorded) {
+        Map<String, Long> totals = new TreeMap<>();
+        for (Entry entry : recorded) {
+            Long total = totals.get(entry.getPhase());
+            totals.put(entry.getPhase(), (total == null ? 0L : total) + entry.getDurationMillis());
+        }
+
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html>\n<head><meta charset=\"utf-8\"><title>Conda timings of ")
+                .append(htmlText(projectPath)).append("</title></head>\n<body>\n<h1>Conda timings of ")
+                .append(htmlText(projectPath)).append("</h1>\n");
+        html.append("<h2>Totals</h2>\n<table>\n<tr><th>Phase</th><th>Duration (ms)</th></tr>\n");
+        for (Map.Entry<String, Long> total : totals.entrySet()) {
+            html.append("<tr><td>").append(htmlText(total.getKey())).append("</td><td>")
+                    .append(total.getValue()).append("</td></tr>\n");
+        }
+        html.append("</table>\n<h2>Phases</h2>\n<table>\n")
+                .append("<tr><th>Task</th><th>Phase</th><th>Subject</th><th>Duration (ms)</th></tr>\n");
+        for (Entry entry : recorded) {
+            html.append("<tr><td>").append(htmlText(entry.getTask()))
+                    .append("</td><td>").append(htmlText(entry.getPhase()))
+                    .append("</td><td>").append(htmlText(entry.getSubject() == null ? "" : entry.getSubject()))
+                    .append("</td><td>").append(entry.getDurationMillis()).append("</td></tr>\n");
+        }
+        html.append("</table>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    private static String jsonString(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    private static String htmlText(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * A phase being timed.
+     */
+    public final class Phase implements AutoCloseable {
+        private final String task;
+        private final String phase;
+        private final String subject;
+        private final long startMillis;
+
+        private Phase(String task, String phase, String subject, long startMillis) {
+            this.task = task;
+            this.phase = phase;
+            this.subject = subject;
+            this.startMillis = startMillis;
+        }
+
+        @Override
+        public void close() {
+            record(task, phase, subject, startMillis, System.currentTimeMillis() - startMillis);
+        }
+    }
+
+    /**
+     * A recorded phase.
+     */
+    public static final class Entry {
+        private final String task;
+        private final String phase;
+        private final String subject;
+        private final long startMillis;
+        private final long durationMillis;
+
+        Entry(String task, String phase, String subject, long startMillis, long durationMillis) {
+            this.task = task;
+            this.phase = phase;
+            this.subject = subject;
+            this.startMillis = startMillis;
+            this.durationMillis = durationMillis;
+        }
+
+        public String getTask() {
+            return task;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long-lived Python process of a bootstrap install that runs conda commands in-process, so that consecutive commands
+ * within one build share an interpreter with conda already imported instead of paying its start-up cost every time.
+ *
+ * <p>There is at most one worker per bootstrap directory. Workers are stopped by {@link #stopAll()} at the end of
+ * every build, so conda state cached by the interpreter never outlives the build. A worker that fails is not restarted
+ * until the next build; callers are expected to fall back to running conda directly whenever {@link #run} throws
+ * before any output of the command was written.
+ *
+ * @author agent
+ */
+public final class CondaWorker {
+    private static final Logger LOG = LoggerFactory.getLogger(CondaWorker.class);
+
+    private static final String SCRIPT_RESOURCE = "conda_worker.py";
+    private static final String STANDARD_OUTPUT_FRAME = "out";
+    private static final String ERROR_OUTPUT_FRAME = "err";
+    private static final String EXIT_FRAME = "exit";
+    private static final int BUFFER_SIZE = 8192;
+    private static final Map<String, CondaWorker> WORKERS = new TreeMap<>();
+    private static final Set<String> FAILED = new TreeSet<>();
+
+    private final String key;
+    private final File bootstrapDirectory;
+    private final Process process;
+    private final OutputStream requests;
+    private final InputStream responses;
+
+    private CondaWorker(String key, File bootstrapDirectory, Process process) {
+        this.key = key;
+        this.bootstrapDirectory = bootstrapDirectory;
+        this.process = process;
+        this.requests = process.getOutputStream();
+        this.responses = new BufferedInputStream(process.getInputStream());
+    }
+
+    /**
+     * Returns the running worker of {@code bootstrapDirectory}, starting it if necessary.
+     *
+     * @throws IOException if the worker cannot be started or has already failed during this build
+     */
+    public static CondaWorker get(File bootstrapDirectory) throws IOException {
+        String key = bootstrapDirectory.getCanonicalPath();
+        synchronized (WORKERS) {
+            if (FAILED.contains(key)) {
+                throw new IOException("The conda worker of " + bootstrapDirectory + " failed earlier in this build");
+            }
+            CondaWorker worker = WORKERS.get(key);
+            if (worker == null) {
+                try {
+                    worker = start(key, bootstrapDirectory);
+                } catch (IOException e) {
+                    FAILED.add(key);
+                    throw e;
+                }
+                WORKERS.put(key, worker);
+            }
+            return worker;
+        }
+    }
+
+    /**
+     * Stops every running worker and forgets about failed ones.
+     */
+    public static void stopAll() {
+        List<CondaWorker> workers;
+        synchronized (WORKERS) {
+            workers = new ArrayList<>(WORKERS.values());
+            WORKERS.clear();
+            FAILED.clear();
+        }
+        for (CondaWorker worker : workers) {
+            worker.stop();
+        }
+    }
+
+    /**
+     * Stops the worker of {@code bootstrapDirectory}, if any, e.g. after packages of the bootstrap install changed.
+     */
+    public static void stop(File bootstrapDirectory) throws IOException {
+        CondaWorker worker;
+        synchronized (WORKERS) {
+            worker = WORKERS.remove(bootstrapDirectory.getCanonicalPath());
+        }
+        if (worker != null) {
+            worker.stop();
+        }
+    }
+
+    private static CondaWorker start(String key, File bootstrapDirectory) throws IOException {
+        File python = bootstrapDirectory.toPath().resolve("bin/python").toFile();
+        if (!python.canExecute()) {
+            throw new IOException("No Python interpreter at " + python);
+        }
+        ProcessBuilder builder = new ProcessBuilder(python.getPath(), "-u", "-c", readScript());
+        builder.environment().put("PYTHONIOENCODING", "utf-8");
+        final Process process = builder.start();
+
+        Thread errorLogger = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                logErrorOutput(process.getErrorStream());
+            }
+        }, "conda worker " + bootstrapDirectory);
+        errorLogger.setDaemon(true);
+        errorLogger.start();
+
+        LOG.info("Started conda worker for {}", bootstrapDirectory);
+        return new CondaWorker(key, bootstrapDirectory, process);
+    }
+
+    private static String readScript() throws IOException {
+        try (InputStream script = CondaWorker.class.getResourceAsStream(SCRIPT_RESOURCE)) {
+            if (script == null) {
+                throw new IOException("Missing resource " + SCRIPT_RESOURCE);
+            }
+            ByteArrayOutputStream contents = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = script.read(buffer)) != -1) {
+                contents.write(buffer, 0, read);
+            }
+            return contents.toString("UTF-8");
+        }
+    }
+
+    private static void logErrorOutput(InputStream errorOutput) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(errorOutput, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LOG.debug("conda worker: {}", line);
+            }
+        } catch (IOException e) {
+            LOG.debug("Stopped reading conda worker output", e);
+        }
+    }
+
+    /**
+     * Runs {@code conda <args>} (or conda-build, for {@code build} commands) in the worker and waits for it to finish,
+     * writing its output to {@code standardOutput} and {@code errorOutput} as the worker produces it. Returns the exit
+     * value of the command.
+     *
+     * @throws IOException if the worker died or could not be talked to, possibly after part of the output was written;
+     *         the worker is then stopped for the rest of the build
+     */
+    public synchronized int run(List<String> args, OutputStream standardOutput, OutputStream errorOutput)
+            throws IOException {
+        StringBuilder request = new StringBuilder();
+        for (String arg : args) {
+            if (arg.indexOf('\0') >= 0 || arg.indexOf('\n') >= 0) {
+                throw new IllegalArgumentException("conda worker arguments must not contain NUL or newlines: " + arg);
+            }
+            request.append(request.length() == 0 ? "" : "\0").append(arg);
+        }
+        request.append('\n');
+
+        try {
+            requests.write(request.toString().getBytes(StandardCharsets.UTF_8));
+            requests.flush();
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (true) {
+                String[] header = readLine().split(" ");
+                if (header.length != 2) {
+                    throw new IOException("Malformed conda worker response header " + header[0]);
+                }
+                if (EXIT_FRAME.equals(header[0])) {
+                    return Integer.parseInt(header[1]);
+                }
+                OutputStream destination;
+                if (STANDARD_OUTPUT_FRAME.equals(header[0])) {
+                    destination = standardOutput;
+                } else if (ERROR_OUTPUT_FRAME.equals(header[0])) {
+                    destination = errorOutput;
+                } else {
+                    throw new IOException("Unknown conda worker response frame " + header[0]);
+                }
+                copy(Integer.parseInt(header[1]), buffer, destination);
+            }
+        } catch (IOException | NumberFormatException e) {
+            fail();
+            throw new IOException("conda worker for " + bootstrapDirectory + " failed", e);
+        }
+    }
+
+    private void copy(int length, byte[] buffer, OutputStream destination) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int read = responses.read(buffer, 0, Math.min(remaining, buffer.length));
+            if (read == -1) {
+                throw new IOException("conda worker exited");
+            }
+            destination.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int read;
+        while ((read = responses.read()) != '\n') {
+            if (read == -1) {
+                throw new IOException("conda worker exited");
+            }
+            line.write(read);
+        }
+        return line.toString("UTF-8");
+    }
+
+    private void fail() {
+        synchronized (WORKERS) {
+            WORKERS.remove(key);
+            FAILED.add(key);
+        }
+        stop();
+    }
+
+    private void stop() {
+        try {
+            requests.close();
+        } catch (IOException e) {
+            LOG.debug("Failed to close conda worker input", e);
+        }
+        process.destroy();
+        LOG.info("Stopped conda worker for {}", bootstrapDirectory);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exclusive lock on a file that is honoured both by other threads of this JVM (e.g. {@code --parallel} builds in one
+ * daemon) and by other processes (e.g. a second daemon on the same build host).
+ *
+ * <p>{@link FileChannel#lock()} alone is not enough: the JVM holds file locks on behalf of the whole process and throws
+ * {@link java.nio.channels.OverlappingFileLockException} for a second lock on the same file, so threads first serialize
+ * on an in-process lock keyed by the canonical path.
+ *
+ * @author agent
+ */
+public final class CrossProcessLock implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(CrossProcessLock.class);
+
+    private static final ConcurrentMap<String, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final File lockFile;
+    private final ReentrantLock localLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private CrossProcessLock(File lockFile, ReentrantLock localLock, FileChannel channel, FileLock fileLock) {
+        this.lockFile = lockFile;
+        this.localLock = localLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Blocks until the lock on {@code lockFile} is held, creating the file and its parent directories if necessary.
+     */
+    public static CrossProcessLock acquire(File lockFile) throws IOException {
+        File canonicalFile = lockFile.getCanonicalFile();
+        Files.createDirectories(canonicalFile.getParentFile().toPath());
+
+        ReentrantLock localLock = new ReentrantLock();
+        ReentrantLock existing = LOCAL_LOCKS.putIfAbsent(canonicalFile.getPath(), localLock);
+        if (existing != null) {
+            localLock = existing;
+        }
+        localLock.lock();
+
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(canonicalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                LOG.info("Waiting for lock on {} held by another build", canonicalFile);
+                fileLock = channel.lock();
+            }
+            LOG.debug("Acquired lock on {}", canonicalFile);
+            return new CrossProcessLock(canonicalFile, localLock, channel, fileLock);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            localLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the lock on {@code lockFile} if it is free, or {@code null} if another thread or process holds it. Unlike
+     * {@link #acquire(File)}, this also returns {@code null} when the calling thread itself already holds the lock.
+     */
+    public static CrossProcessLock tryAcquire(File lockFile) throws IOException {
+        File canonicalFile = lockFile.getCanonicalFile();
+        Files.createDirectories(canonicalFile.getParentFile().toPath());
+
+        ReentrantLock localLock = new ReentrantLock();
+        ReentrantLock existing = LOCAL_LOCKS.putIfAbsent(canonicalFile.getPath(), localLock);
+        if (existing != null) {
+            localLock = existing;
+        }
+        if (localLock.isHeldByCurrentThread() || !localLock.tryLock()) {
+            return null;
+        }
+
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(canonicalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = channel.tryLock();
+            if (fileLock != null) {
+                LOG.debug("Acquired lock on {}", canonicalFile);
+                return new CrossProcessLock(canonicalFile, localLock, channel, fileLock);
+            }
+        } catch (OverlappingFileLockException e) {
+            LOG.debug("Lock on {} is already held by this process", canonicalFile, e);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            localLock.unlock();
+            throw e;
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        localLock.unlock();
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            fileLock.release();
+            channel.close();
+            LOG.debug("Released lock on {}", lockFile);
+        } finally {
+            localLock.unlock();
+        }
+    }
+}
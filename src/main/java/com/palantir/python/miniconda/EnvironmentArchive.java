@@ -0,0 +1,266 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A relocatable archive of a conda environment that can be unpacked at another prefix much faster than conda can
+ * create the environment, e.g. to restore build environments on fresh CI agents.
+ *
+ * <p>Like conda-pack, the archive records which files embed the environment's prefix, so that unpacking only has to
+ * rewrite those files. The content is compressed in independent blocks on several threads; see
+ * {@link ParallelBlockStreams}. Archives are named after the environment cache key and the platform, so an archive is
+ * only ever used for the environment it was packed from.
+ *
+ * @author agent
+ */
+public final class EnvironmentArchive {
+    private static final Logger LOG = LoggerFactory.getLogger(EnvironmentArchive.class);
+
+    private static final String MAGIC = "miniconda-environment-archive-1";
+    private static final String SUFFIX = ".condapack";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte END = 0;
+    private static final byte DIRECTORY = 1;
+    private static final byte FILE = 2;
+    private static final byte SYMLINK = 3;
+    private static final byte NO_PREFIX = 0;
+    private static final byte TEXT_PREFIX = 1;
+    private static final byte BINARY_PREFIX = 2;
+    private static final PosixFilePermission[] PERMISSIONS = PosixFilePermission.values();
+
+    /**
+     * Returns the archive in {@code directory} for the environment with the given cache key on this platform.
+     */
+    public static File getArchiveFile(File directory, String key) {
+        return new File(directory, key + "-" + MinicondaUtils.getPlatformSubdir() + SUFFIX);
+    }
+
+    /**
+     * Packs {@code environment} into {@code archive}, replacing it atomically.
+     */
+    public static void pack(final Path environment, File archive, int threads) throws IOException {
+        final Map<String, Boolean> prefixFiles = EnvironmentLinker.findPrefixFiles(environment);
+        Path temporary = new File(archive.getAbsoluteFile().getParentFile(), archive.getName() + ".tmp").toPath();
+        Files.createDirectories(temporary.getParent());
+
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE)) {
+            file.write(MAGIC.getBytes(StandardCharsets.UTF_8));
+            try (final DataOutputStream out = new DataOutputStream(ParallelBlockStreams.compress(file, threads))) {
+                out.writeUTF(environment.toAbsolutePath().toString());
+                out.writeBoolean(prefixFiles.containsValue(Boolean.TRUE));
+                Files.walkFileTree(environment, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        if (!dir.equals(environment)) {
+                            out.writeByte(DIRECTORY);
+                            out.writeUTF(toRelativeString(environment, dir));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        String path = toRelativeString(environment, file);
+                        if (attrs.isSymbolicLink()) {
+                            out.writeByte(SYMLINK);
+                            out.writeUTF(path);
+                            out.writeUTF(Files.readSymbolicLink(file).toString());
+                        } else if (attrs.isRegularFile()) {
+                            Boolean binary = prefixFiles.get(path);
+                            out.writeByte(FILE);
+                            out.writeUTF(path);
+                            out.writeShort(getMode(file));
+                            out.writeByte(binary == null ? NO_PREFIX : binary ? BINARY_PREFIX : TEXT_PREFIX);
+                            out.writeLong(attrs.size());
+                            copy(file, out, attrs.size());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+                out.writeByte(END);
+            }
+        }
+        Files.move(temporary, archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.info("Packed {} into {} ({} bytes)", environment, archive, archive.length());
+    }
+
+    /**
+     * Returns whether {@code archive} can be unpacked at {@code target}: binary files embedding the prefix can only
+     * be patched when the new prefix is not longer than the one the environment was packed from.
+     */
+    public static boolean canUnpack(File archive, Path target) throws IOException {
+        try (DataInputStream in = open(archive, 1)) {
+            String prefix = in.readUTF();
+            boolean hasBinaryPrefixFiles = in.readBoolean();
+            return !hasBinaryPrefixFiles || prefixLength(target.toAbsolutePath().toString()) <= prefixLength(prefix);
+        }
+    }
+
+    /**
+     * Unpacks {@code archive} into the empty or missing directory {@code target}, rewriting the recorded prefix.
+     */
+    public static void unpack(File archive, Path target, int threads) throws IOException {
+        try (DataInputStream in = open(archive, threads)) {
+            byte[] oldPrefix = in.readUTF().getBytes(StandardCharsets.UTF_8);
+            in.readBoolean();
+            String oldPrefixString = new String(oldPrefix, StandardCharsets.UTF_8);
+            String newPrefixString = target.toAbsolutePath().toString();
+            byte[] newPrefix = newPrefixString.getBytes(StandardCharsets.UTF_8);
+            Files.createDirectories(target);
+
+            int files = 0;
+            for (byte type = in.readByte(); type != END; type = in.readByte()) {
+                Path path = target.resolve(in.readUTF());
+                if (type == DIRECTORY) {
+                    Files.createDirectories(path);
+                } else if (type == SYMLINK) {
+                    String link = in.readUTF();
+                    if (link.equals(oldPrefixString) || link.startsWith(oldPrefixString + File.separator)) {
+                        link = newPrefixString + link.substring(oldPrefixString.length());
+                    }
+                    Files.createSymbolicLink(path, Paths.get(link));
+                } else if (type == FILE) {
+                    int mode = in.readShort();
+                    byte prefixMode = in.readByte();
+                    long size = in.readLong();
+                    if (prefixMode == NO_PREFIX) {
+                        try (OutputStream out = Files.newOutputStream(path)) {
+                            copy(in, out, size);
+                        }
+                    } else {
+                        byte[] content = new byte[(int) size];
+                        in.readFully(content);
+                        Files.write(path, prefixMode == BINARY_PREFIX
+                                ? EnvironmentLinker.replaceBinary(content, oldPrefix, newPrefix)
+                                : EnvironmentLinker.replaceText(content, oldPrefix, newPrefix));
+                    }
+                    setMode(path, mode);
+                    files++;
+                } else {
+                    throw new IOException("Corrupt environment archive " + archive);
+                }
+            }
+            LOG.info("Unpacked {} files from {} into {}", files, archive, target);
+        }
+    }
+
+    private static DataInputStream open(File archive, int threads) throws IOException {
+        InputStream file = new BufferedInputStream(Files.newInputStream(archive.toPath()), BUFFER_SIZE);
+        try {
+            byte[] magic = new byte[MAGIC.length()];
+            new DataInputStream(file).readFully(magic);
+            if (!MAGIC.equals(new String(magic, StandardCharsets.UTF_8))) {
+                throw new IOException(archive + " is not an environment archive");
+            }
+            return new DataInputStream(ParallelBlockStreams.decompress(file, threads));
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private static void copy(Path file, OutputStream out, long size) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            long copied = copy(in, out, size);
+            if (copied != size || in.read() != -1) {
+                throw new IOException(file + " changed while it was packed");
+            }
+        }
+    }
+
+    private static long copy(InputStream in, OutputStream out, long size) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = size;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                break;
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+        return size - remaining;
+    }
+
+    private static int getMode(Path file) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if (view == null) {
+            return Files.isExecutable(file) ? 0755 : 0644;
+        }
+        int mode = 0;
+        for (PosixFilePermission permission : view.readAttributes().permissions()) {
+            mode |= 1 << (PERMISSIONS.length - 1 - permission.ordinal());
+        }
+        return mode;
+    }
+
+    private static void setMode(Path file, int mode) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if (view == null) {
+            file.toFile().setExecutable((mode & 0100) != 0);
+            return;
+        }
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (PosixFilePermission permission : PERMISSIONS) {
+            if ((mode & (1 << (PERMISSIONS.length - 1 - permission.ordinal()))) != 0) {
+                permissions.add(permission);
+            }
+        }
+        view.setPermissions(permissions);
+    }
+
+    private static int prefixLength(String prefix) {
+        return prefix.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static String toRelativeString(Path root, Path file) {
+        StringBuilder result = new StringBuilder();
+        for (Path part : root.relativize(file)) {
+            if (result.length() > 0) {
+                result.append('/');
+            }
+            result.append(part.toString());
+        }
+        return result.toString();
+    }
+
+    private EnvironmentArchive() {}
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Machine-wide store of conda environments keyed by a hash of everything that determines their contents.
+ *
+ * <p>Each entry lives in {@code <root>/<key>/env} and only counts as present once its completion marker has been
+ * written, so environments left behind by an interrupted {@code conda create} are discarded rather than reused.
+ *
+ * @author agent
+ */
+public final class EnvironmentCache {
+    private static final Logger LOG = LoggerFactory.getLogger(EnvironmentCache.class);
+
+    private static final String ENVIRONMENT_DIRECTORY = "env";
+    private static final String COMPLETE_MARKER = ".complete";
+    private static final String LAST_USED_MARKER = ".last-used";
+    private static final String PREFIX_MANIFEST = ".has-prefix";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final String BINARY_MODE = "binary";
+    private static final String TEXT_MODE = "text";
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private static final long STALE_INCOMPLETE_ENTRY_MILLIS = 24L * 60L * 60L * 1000L;
+
+    private final File root;
+
+    public EnvironmentCache(File root) {
+        this.root = Objects.requireNonNull(root, "root must not be null");
+    }
+
+    /**
+     * Computes the cache key for the environment described by the extension. Package order does not affect the key
+     * as conda resolves them as a set, whereas channel order does since it determines channel priority. Environments
+     * installed from a lock file are additionally keyed by its contents, which pin the exact packages.
+     */
+    public static String computeKey(MinicondaExtension miniconda) throws IOException {
+        return computeKey(EnvironmentSpec.of(miniconda), miniconda.getUseLockFile() ? miniconda.getLockFile() : null);
+    }
+
+    /**
+     * Computes the cache key for the environment described by {@code spec}, installed from {@code lockFile} unless it
+     * is {@code null}, as for {@link #computeKey(MinicondaExtension)}.
+     */
+    public static String computeKey(EnvironmentSpec spec, File lockFile) throws IOException {
+        List<String> packages = spec.getPackages();
+        Collections.sort(packages);
+
+        StringBuilder description = new StringBuilder();
+        for (String value : spec.getBase()) {
+            description.append(value).append('\n');
+        }
+        for (String channel : spec.getChannels()) {
+            description.append("channel=").append(channel).append('\n');
+        }
+        for (String pkg : packages) {
+            description.append("package=").append(pkg).append('\n');
+        }
+        if (lockFile != null) {
+            description.append("lock=").append(Hashes.sha256(lockFile.toPath())).append('\n');
+        }
+        return Hashes.sha256(description.toString());
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public File getEnvironmentDirectory(String key) {
+        return new File(getEntryDirectory(key), ENVIRONMENT_DIRECTORY);
+    }
+
+    /**
+     * Returns the file to lock while creating the entry for {@code key}. It lives outside of the entry directory so
+     * that {@link #prepare(String)} can remove the entry while the lock is held.
+     */
+    public File getLockFile(String key) {
+        return new File(root, key + LOCK_SUFFIX);
+    }
+
+    public boolean contains(String key) {
+        return new File(getEntryDirectory(key), COMPLETE_MARKER).isFile();
+    }
+
+    /**
+     * Removes any partially created entry for {@code key} so that a fresh environment can be created in its place.
+     */
+    public void prepare(String key) throws IOException {
+        File entry = getEntryDirectory(key);
+        FileTreeUtils.deleteRecursively(entry.toPath());
+        Files.createDirectories(entry.toPath());
+    }
+
+    /**
+     * Marks the environment for {@code key} as complete, recording its size for later eviction decisions and the files
+     * embedding its prefix so that it can be relocated without rescanning.
+     */
+    public void commit(String key) throws IOException {
+        writePrefixFiles(key, EnvironmentLinker.findPrefixFiles(getEnvironmentDirectory(key).toPath()));
+        long size = FileTreeUtils.sizeOf(getEnvironmentDirectory(key).toPath());
+        Files.write(new File(getEntryDirectory(key), COMPLETE_MARKER).toPath(),
+                Long.toString(size).getBytes(StandardCharsets.UTF_8));
+        touch(key);
+        LOG.info("Cached conda environment {} ({} bytes)", key, size);
+    }
+
+    /**
+     * Returns the files of the cached environment which embed its prefix, mapped to whether they are binary.
+     */
+    public Map<String, Boolean> getPrefixFiles(String key) throws IOException {
+        Path manifest = new File(getEntryDirectory(key), PREFIX_MANIFEST).toPath();
+        if (!Files.isRegularFile(manifest)) {
+            // entries committed before prefix manifests were recorded
+            writePrefixFiles(key, EnvironmentLinker.findPrefixFiles(getEnvironmentDirectory(key).toPath()));
+        }
+        Map<String, Boolean> prefixFiles = new TreeMap<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            int separator = line.indexOf(' ');
+            if (separator > 0) {
+                prefixFiles.put(line.substring(separator + 1), BINARY_MODE.equals(line.substring(0, separator)));
+            }
+        }
+        return prefixFiles;
+    }
+
+    private void writePrefixFiles(String key, Map<String, Boolean> prefixFiles) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Boolean> prefixFile : prefixFiles.entrySet()) {
+            lines.add((prefixFile.getValue() ? BINARY_MODE : TEXT_MODE) + " " + prefixFile.getKey());
+        }
+        Files.write(new File(getEntryDirectory(key), PREFIX_MANIFEST).toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Records that the entry for {@code key} was just used, making it the most recent candidate to keep.
+     */
+    public void touch(String key) throws IOException {
+        Path marker = new File(getEntryDirectory(key), LAST_USED_MARKER).toPath();
+        if (!Files.exists(marker)) {
+            Files.createFile(marker);
+        }
+        Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    /**
+     * Evicts least recently used entries until at most {@code maxEntries} remain and their total size is within
+     * {@code maxSizeMb} megabytes. Non-positive limits are treated as unbounded and {@code keep} is never evicted.
+     * Incomplete entries are left alone unless they are old enough to have been abandoned by a crashed build, and
+     * entries whose lock is held, because another build is creating or materializing them, are skipped.
+     *
+     * @return the number of evicted entries
+     */
+    public int prune(int maxEntries, long maxSizeMb, String keep) throws IOException {
+        List<Entry> entries = listEntries();
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry left, Entry right) {
+                return Long.compare(right.lastUsed, left.lastUsed);
+            }
+        });
+
+        long maxSizeBytes = maxSizeMb > 0 ? maxSizeMb * BYTES_PER_MEGABYTE : Long.MAX_VALUE;
+        int remainingEntries = 0;
+        long remainingBytes = 0L;
+        int evicted = 0;
+        long staleBefore = System.currentTimeMillis() - STALE_INCOMPLETE_ENTRY_MILLIS;
+        for (Entry entry : entries) {
+            if (!entry.complete && entry.lastUsed > staleBefore) {
+                continue;
+            }
+            boolean withinEntries = maxEntries <= 0 || remainingEntries < maxEntries;
+            boolean withinSize = remainingBytes + entry.size <= maxSizeBytes;
+            if (entry.key.equals(keep) || (entry.complete && withinEntries && withinSize)) {
+                remainingEntries++;
+                remainingBytes += entry.size;
+                continue;
+            }
+            try (CrossProcessLock lock = CrossProcessLock.tryAcquire(getLockFile(entry.key))) {
+                if (lock == null) {
+                    LOG.info("Not evicting cached conda environment {}: it is in use", entry.key);
+                    continue;
+                }
+                LOG.info("Evicting cached conda environment {}", entry.key);
+                FileTreeUtils.deleteRecursively(getEntryDirectory(entry.key).toPath());
+                // removed while still held, so evicted keys do not leave a lock file behind each
+                Files.deleteIfExists(getLockFile(entry.key).toPath());
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private List<Entry> listEntries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        File[] children = root.listFiles();
+        if (children == null) {
+            return entries;
+        }
+        for (File child : children) {
+            if (!child.isDirectory()) {
+                continue;
+            }
+            Path complete = new File(child, COMPLETE_MARKER).toPath();
+            Path lastUsed = new File(child, LAST_USED_MARKER).toPath();
+            boolean isComplete = Files.isRegularFile(complete);
+            long size = isComplete ? parseSize(complete) : 0L;
+            long used = Files.getLastModifiedTime(Files.exists(lastUsed) ? lastUsed : child.toPath()).toMillis();
+            entries.add(new Entry(child.getName(), isComplete, size, used));
+        }
+        return entries;
+    }
+
+    private static long parseSize(Path completeMarker) throws IOException {
+        String content = new String(Files.readAllBytes(completeMarker), StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(content);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private File getEntryDirectory(String key) {
+        return new File(root, key);
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final boolean complete;
+        private final long size;
+        private final long lastUsed;
+
+        Entry(String key, boolean complete, long size, long lastUsed) {
+            this.key = key;
+            this.complete = complete;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Materializes a copy of a conda environment at a new prefix by hard linking every file that does not mention the
+ * original prefix and rewriting only the ones that do, the same way conda itself relocates package files.
+ *
+ * @author agent
+ */
+public final class EnvironmentLinker {
+    private static final Logger LOG = LoggerFactory.getLogger(EnvironmentLinker.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Scans {@code environment} for regular files that embed its absolute path, returning their relative paths mapped
+     * to whether they are binary (contain NUL bytes) and therefore need length-preserving replacement.
+     */
+    public static Map<String, Boolean> findPrefixFiles(final Path environment) throws IOException {
+        final byte[] prefix = environment.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+        final Map<String, Boolean> prefixFiles = new TreeMap<>();
+        Files.walkFileTree(environment, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    ScanResult result = scan(file, prefix);
+                    if (result.containsPrefix) {
+                        prefixFiles.put(toRelativeString(environment, file), result.binary);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return prefixFiles;
+    }
+
+    /**
+     * Returns whether an environment with the given prefix files can be relocated from {@code source} to
+     * {@code target}. Binary files can only be patched in place when the new prefix is not longer than the old one.
+     */
+    public static boolean canRelocate(Path source, Path target, Map<String, Boolean> prefixFiles) {
+        if (!prefixFiles.containsValue(Boolean.TRUE)) {
+            return true;
+        }
+        return prefixBytes(target).length <= prefixBytes(source).length;
+    }
+
+    /**
+     * Populates {@code target} from {@code source}: files listed in {@code prefixFiles} are copied with the prefix
+     * rewritten, everything else is hard linked, falling back to a plain copy when the two directories are on
+     * different file systems.
+     */
+    public static void materialize(final Path source, final Path target, final Map<String, Boolean> prefixFiles)
+            throws IOException {
+        final byte[] oldPrefix = prefixBytes(source);
+        final byte[] newPrefix = prefixBytes(target);
+        final String oldPrefixString = source.toAbsolutePath().toString();
+        final String newPrefixString = target.toAbsolutePath().toString();
+        final boolean[] linksSupported = {true};
+        final int[] linked = {0};
+
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path destination = target.resolve(source.relativize(file));
+                if (attrs.isSymbolicLink()) {
+                    String link = Files.readSymbolicLink(file).toString();
+                    if (link.equals(oldPrefixString) || link.startsWith(oldPrefixString + File.separator)) {
+                        link = newPrefixString + link.substring(oldPrefixString.length());
+                    }
+                    Files.createSymbolicLink(destination, Paths.get(link));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                Boolean binary = prefixFiles.get(toRelativeString(source, file));
+                if (binary != null) {
+                    byte[] content = Files.readAllBytes(file);
+                    byte[] replaced = binary
+                            ? replaceBinary(content, oldPrefix, newPrefix)
+                            : replaceText(content, oldPrefix, newPrefix);
+                    Files.write(destination, replaced);
+                    copyPermissions(file, destination);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                if (linksSupported[0]) {
+                    try {
+                        Files.createLink(destination, file);
+                        linked[0]++;
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        LOG.info("Cannot hard link {} to {}, falling back to copying: {}", file, destination, e);
+                        linksSupported[0] = false;
+                    }
+                }
+                Files.copy(file, destination, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        LOG.info("Materialized {} from {} ({} files hard linked, {} rewritten)",
+                target, source, linked[0], prefixFiles.size());
+    }
+
+    static byte[] replaceText(byte[] content, byte[] oldPrefix, byte[] newPrefix) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length);
+        int start = 0;
+        int index = indexOf(content, oldPrefix, 0, content.length);
+        while (index >= 0) {
+            out.write(content, start, index - start);
+            out.write(newPrefix, 0, newPrefix.length);
+            start = index + oldPrefix.length;
+            index = indexOf(content, oldPrefix, start, content.length);
+        }
+        out.write(content, start, content.length - start);
+        return out.toByteArray();
+    }
+
+    /**
+     * Replaces the prefix inside NUL-terminated strings, padding each string with NULs so the file keeps its length
+     * and all offsets stay valid. Mirrors conda's {@code binary_replace}.
+     */
+    static byte[] replaceBinary(byte[] content, byte[] oldPrefix, byte[] newPrefix) {
+        if (newPrefix.length > oldPrefix.length) {
+            throw new IllegalArgumentException("Cannot replace a binary prefix with a longer one");
+        }
+        byte[] result = Arrays.copyOf(content, content.length);
+        int index = indexOf(result, oldPrefix, 0, result.length);
+        while (index >= 0) {
+            int end = index;
+            while (end < result.length && result[end] != 0) {
+                end++;
+            }
+            byte[] replaced = replaceText(Arrays.copyOfRange(result, index, end), oldPrefix, newPrefix);
+            System.arraycopy(replaced, 0, result, index, replaced.length);
+            Arrays.fill(result, index + replaced.length, end, (byte) 0);
+            index = indexOf(result, oldPrefix, end, result.length);
+        }
+        return result;
+    }
+
+    private static ScanResult scan(Path file, byte[] prefix) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE + prefix.length];
+        boolean binary = false;
+        boolean containsPrefix = false;
+        int carried = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer, carried, BUFFER_SIZE)) > 0) {
+                int available = carried + read;
+                for (int i = carried; i < available && !binary; i++) {
+                    binary = buffer[i] == 0;
+                }
+                containsPrefix = containsPrefix || indexOf(buffer, prefix, 0, available) >= 0;
+                if (containsPrefix && binary) {
+                    break;
+                }
+                carried = Math.min(prefix.length - 1, available);
+                System.arraycopy(buffer, available - carried, buffer, 0, carried);
+            }
+        }
+        return new ScanResult(containsPrefix, binary);
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle, int from, int to) {
+        outer:
+        for (int i = from; i <= to - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static void copyPermissions(Path source, Path destination) throws IOException {
+        PosixFileAttributeView sourceView = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        PosixFileAttributeView destinationView = Files.getFileAttributeView(destination, PosixFileAttributeView.class);
+        if (sourceView != null && destinationView != null) {
+            destinationView.setPermissions(sourceView.readAttributes().permissions());
+        } else if (Files.isExecutable(source)) {
+            destination.toFile().setExecutable(true);
+        }
+    }
+
+    private static byte[] prefixBytes(Path prefix) {
+        return prefix.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String toRelativeString(Path root, Path file) {
+        StringBuilder result = new StringBuilder();
+        for (Path part : root.relativize(file)) {
+            if (result.length() > 0) {
+                result.append('/');
+            }
+            result.append(part.toString());
+        }
+        return result.toString();
+    }
+
+    private static final class ScanResult {
+        private final boolean containsPrefix;
+        private final boolean binary;
+
+        ScanResult(boolean containsPrefix, boolean binary) {
+            this.containsPrefix = containsPrefix;
+            this.binary = binary;
+        }
+    }
+
+    private EnvironmentLinker() {}
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A compact fingerprint of a conda environment, so that checking whether it is unchanged does not require Gradle to
+ * snapshot each of its tens of thousands of files.
+ *
+ * <p>The manifest records a digest of the {@code conda-meta} listing, which changes whenever conda links or unlinks a
+ * package and is cheap enough to recompute on every up-to-date check, and one digest per package over the path, size
+ * and modification time of every file conda recorded for it. The per-package digests are only recomputed on demand,
+ * in parallel, to detect files that were modified outside of conda. Files not owned by a conda package, such as pip
+ * installs, are not covered.
+ *
+ * @author agent
+ */
+public final class EnvironmentManifest {
+    private static final Logger LOG = LoggerFactory.getLogger(EnvironmentManifest.class);
+
+    private static final String FILE_NAME = ".environment-manifest";
+    private static final String CONDA_META_DIRECTORY = "conda-meta";
+    private static final String METADATA_SUFFIX = ".json";
+    private static final String PACKAGES_PREFIX = "packages ";
+    private static final String PACKAGE_PREFIX = "package ";
+    private static final Pattern FILES = Pattern.compile("\"files\"\\s*:\\s*\\[");
+    private static final Pattern STRING = Pattern.compile("\\s*,?\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+    public static File getFile(File environment) {
+        return new File(environment, FILE_NAME);
+    }
+
+    /**
+     * Fingerprints {@code environment} and writes the manifest into it.
+     */
+    public static void write(Path environment, int threads) throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        manifest.append(PACKAGES_PREFIX).append(computeListingDigest(environment)).append('\n');
+        for (Map.Entry<String, String> entry : computePackageDigests(environment, threads).entrySet()) {
+            manifest.append(PACKAGE_PREFIX).append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        Files.write(getFile(environment.toFile()).toPath(), manifest.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns whether {@code environment} has a manifest and conda has not linked or unlinked packages since it was
+     * written. Only the {@code conda-meta} directory is listed, so this takes milliseconds regardless of the size of
+     * the environment.
+     */
+    public static boolean isCurrent(Path environment) {
+        try {
+            String recorded = readManifest(environment).get(PACKAGES_PREFIX.trim());
+            return recorded != null && recorded.equals(computeListingDigest(environment));
+        } catch (IOException e) {
+            LOG.debug("Cannot read manifest of {}", environment, e);
+            return false;
+        }
+    }
+
+    /**
+     * Recomputes the digest of every package and returns the packages whose recorded files were changed or removed
+     * since the manifest was written, as well as packages that were linked or unlinked. Files no package records are
+     * not considered.
+     */
+    public static List<String> findModifiedPackages(Path environment, int threads) throws IOException {
+        Map<String, String> recorded = new TreeMap<>();
+        for (Map.Entry<String, String> entry : readManifest(environment).entrySet()) {
+            if (entry.getKey().startsWith(PACKAGE_PREFIX)) {
+                recorded.put(entry.getKey().substring(PACKAGE_PREFIX.length()), entry.getValue());
+            }
+        }
+        Map<String, String> current = computePackageDigests(environment, threads);
+        List<String> modified = new ArrayList<>();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            if (!entry.getValue().equals(recorded.get(entry.getKey()))) {
+                modified.add(entry.getKey());
+            }
+        }
+        for (String distribution : recorded.keySet()) {
+            if (!current.containsKey(distribution)) {
+                modified.add(distribution);
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Returns the {@code conda-meta} records of {@code environment} and the files conda recorded for them, which
+     * leaves out files other tools such as pip added. Returns an empty list if there is no environment.
+     */
+    public static List<File> listCondaFiles(File environment) throws IOException {
+        List<File> files = new ArrayList<>();
+        if (!new File(environment, CONDA_META_DIRECTORY).isDirectory()) {
+            return files;
+        }
+        for (File metadata : listMetadataFiles(environment.toPath())) {
+            files.add(metadata);
+            for (String file : readPackageFiles(metadata)) {
+                files.add(new File(environment, file));
+            }
+        }
+        return files;
+    }
+
+    private static Map<String, String> readManifest(Path environment) throws IOException {
+        Map<String, String> entries = new TreeMap<>();
+        for (String line : Files.readAllLines(getFile(environment.toFile()).toPath(), StandardCharsets.UTF_8)) {
+            int separator = line.lastIndexOf(' ');
+            if (separator > 0) {
+                entries.put(line.substring(0, separator), line.substring(separator + 1));
+            }
+        }
+        return entries;
+    }
+
+    private static String computeListingDigest(Path environment) throws IOException {
+        File[] metadataFiles = listMetadataFiles(environment);
+        StringBuilder listing = new StringBuilder();
+        for (File metadata : metadataFiles) {
+            listing.append(metadata.getName()).append(' ').append(metadata.length()).append(' ')
+                    .append(metadata.lastModified()).append('\n');
+        }
+        return Hashes.sha256(listing.toString());
+    }
+
+    private static File[] listMetadataFiles(Path environment) throws IOException {
+        File[] files = environment.resolve(CONDA_META_DIRECTORY).toFile().listFiles();
+        if (files == null) {
+            throw new IOException("No conda environment at " + environment);
+        }
+        List<File> metadataFiles = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(METADATA_SUFFIX)) {
+                metadataFiles.add(file);
+            }
+        }
+        File[] sorted = metadataFiles.toArray(new File[0]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static Map<String, String> computePackageDigests(final Path environment, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            Map<String, Future<String>> digests = new TreeMap<>();
+            for (final File metadata : listMetadataFiles(environment)) {
+                String name = metadata.getName();
+                digests.put(name.substring(0, name.length() - METADATA_SUFFIX.length()),
+                        executor.submit(new Callable<String>() {
+                            @Override
+                            public String call() throws IOException {
+                                return computePackageDigest(environment, metadata);
+                            }
+                        }));
+            }
+            Map<String, String> result = new TreeMap<>();
+            for (Map.Entry<String, Future<String>> entry : digests.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().get());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fingerprinting " + environment, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to fingerprint " + environment, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String computePackageDigest(Path environment, File metadata) throws IOException {
+        StringBuilder description = new StringBuilder();
+        for (String file : readPackageFiles(metadata)) {
+            description.append(file).append(' ');
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(
+                        environment.resolve(file), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                description.append(attributes.size()).append(' ').append(attributes.lastModifiedTime().toMillis());
+            } catch (NoSuchFileException e) {
+                description.append("missing");
+            }
+            description.append('\n');
+        }
+        return Hashes.sha256(description.toString());
+    }
+
+    /**
+     * Returns the paths listed in the {@code files} array of a {@code conda-meta} record.
+     */
+    static List<String> readPackageFiles(File metadata) throws IOException {
+        String json = new String(Files.readAllBytes(metadata.toPath()), StandardCharsets.UTF_8);
+        List<String> files = new ArrayList<>();
+        Matcher start = FILES.matcher(json);
+        if (!start.find()) {
+            return files;
+        }
+        Matcher string = STRING.matcher(json);
+        int position = start.end();
+        while (string.find(position) && string.start() == position) {
+            files.add(unescape(string.group(1)));
+            position = string.end();
+        }
+        return files;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                result.append(c);
+                continue;
+            }
+            char escaped = value.charAt(++i);
+            switch (escaped) {
+                case 'u':
+                    result.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 't':
+                    result.append('\t');
+                    break;
+                default:
+                    result.append(escaped);
+            }
+        }
+        return result.toString();
+    }
+
+    private EnvironmentManifest() {}
+}
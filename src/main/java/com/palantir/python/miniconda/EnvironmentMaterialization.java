@@ -0,0 +1,29 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+/**
+ * How an environment from the {@link EnvironmentCache} is turned into the project's build environment.
+ *
+ * @author agent
+ */
+public enum EnvironmentMaterialization {
+    /** Runs {@code conda create --clone}, letting conda relink every package. */
+    CLONE,
+    /** Hard links unchanged files from the cache and rewrites only files that embed the cached prefix. */
+    LINK
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The settings a conda environment was created from, recorded in the environment after a successful setup so that the
+ * next setup can apply only the packages that changed.
+ *
+ * @author agent
+ */
+public final class EnvironmentSpec {
+    private static final String SPEC_FILE = ".environment-spec";
+    private static final String PYTHON_PACKAGE = "python";
+    private static final String BASE_PREFIX = "base=";
+    private static final String CHANNEL_PREFIX = "channel=";
+    private static final String PACKAGE_PREFIX = "package=";
+
+    private final List<String> base;
+    private final List<String> channels;
+    private final Set<String> packages;
+
+    private EnvironmentSpec(List<String> base, List<String> channels, Set<String> packages) {
+        this.base = base;
+        this.channels = channels;
+        this.packages = packages;
+    }
+
+    /**
+     * Describes the build environment configured by the extension.
+     */
+    public static EnvironmentSpec of(MinicondaExtension miniconda) {
+        List<String> base = new ArrayList<>();
+        base.add("python=" + miniconda.getPythonVersion());
+        base.add("miniconda=" + miniconda.getMinicondaVersion());
+        return new EnvironmentSpec(base, new ArrayList<>(miniconda.getChannels()),
+                new LinkedHashSet<>(miniconda.getPackages()));
+    }
+
+    /**
+     * Reads the spec recorded in {@code prefix}, or returns {@code null} if there is none.
+     */
+    public static EnvironmentSpec read(File prefix) throws IOException {
+        File specFile = new File(prefix, SPEC_FILE);
+        if (!specFile.isFile()) {
+            return null;
+        }
+        List<String> base = new ArrayList<>();
+        List<String> channels = new ArrayList<>();
+        Set<String> packages = new LinkedHashSet<>();
+        for (String line : Files.readAllLines(specFile.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith(BASE_PREFIX)) {
+                base.add(line.substring(BASE_PREFIX.length()));
+            } else if (line.startsWith(CHANNEL_PREFIX)) {
+                channels.add(line.substring(CHANNEL_PREFIX.length()));
+            } else if (line.startsWith(PACKAGE_PREFIX)) {
+                packages.add(line.substring(PACKAGE_PREFIX.length()));
+            }
+        }
+        return new EnvironmentSpec(base, channels, packages);
+    }
+
+    /**
+     * Removes the spec recorded in {@code prefix}, so that an environment left half-updated is recreated next time.
+     */
+    public static void clear(File prefix) throws IOException {
+        Files.deleteIfExists(new File(prefix, SPEC_FILE).toPath());
+    }
+
+    /**
+     * Returns the name of the package matched by a conda or pip package spec such as {@code numpy>=1.11} or
+     * {@code requests[security]==2.13}.
+     */
+    public static String getPackageName(String spec) {
+        String trimmed = spec.trim();
+        for (int i = 0; i < trimmed.length(); i++) {
+            if ("=<>!~[; ".indexOf(trimmed.charAt(i)) >= 0) {
+                return trimmed.substring(0, i);
+            }
+        }
+        return trimmed;
+    }
+
+    public void write(File prefix) throws IOException {
+        Files.write(new File(prefix, SPEC_FILE).toPath(), describe().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the recorded form of this spec, which identifies the environment's contents.
+     */
+    public String describe() {
+        StringBuilder content = new StringBuilder();
+        for (String value : base) {
+            content.append(BASE_PREFIX).append(value).append('\n');
+        }
+        for (String channel : channels) {
+            content.append(CHANNEL_PREFIX).append(channel).append('\n');
+        }
+        for (String pkg : packages) {
+            content.append(PACKAGE_PREFIX).append(pkg).append('\n');
+        }
+        return content.toString();
+    }
+
+    /**
+     * Returns whether an environment created from {@code previous} can be turned into this one by installing and
+     * removing packages. This requires the same bootstrap Python, the same channels and the same python spec.
+     */
+    public boolean canUpdateFrom(EnvironmentSpec previous) {
+        return previous != null
+                && base.equals(previous.base)
+                && channels.equals(previous.channels)
+                && getPythonSpecs(packages).equals(getPythonSpecs(previous.packages));
+    }
+
+    /**
+     * Returns the package specs to install on top of an environment created from {@code previous}.
+     */
+    public List<String> getAddedPackages(EnvironmentSpec previous) {
+        List<String> added = new ArrayList<>(packages);
+        added.removeAll(previous.packages);
+        return added;
+    }
+
+    /**
+     * Returns the Python and Miniconda versions of this environment as {@code name=version} pairs.
+     */
+    public List<String> getBase() {
+        return new ArrayList<>(base);
+    }
+
+    public List<String> getChannels() {
+        return new ArrayList<>(channels);
+    }
+
+    /**
+     * Returns the package specs of this environment.
+     */
+    public List<String> getPackages() {
+        return new ArrayList<>(packages);
+    }
+
+    /**
+     * Returns the names of the packages of this spec that are not among {@code installed}, the packages of an
+     * environment mapped to their versions.
+     */
+    public List<String> getMissingPackages(Map<String, String> installed) {
+        Set<String> missing = new TreeSet<>();
+        for (String pkg : packages) {
+            String name = getPackageName(pkg);
+            if (!installed.containsKey(name)) {
+                missing.add(name);
+            }
+        }
+        return new ArrayList<>(missing);
+    }
+
+    /**
+     * Returns the names of the packages to remove from an environment created from {@code previous}. Packages whose
+     * spec merely changed are not removed, as installing the new spec replaces them.
+     */
+    public List<String> getRemovedPackages(EnvironmentSpec previous) {
+        return getRemovedPackageNames(previous.packages, packages);
+    }
+
+    /**
+     * Returns the names of the packages matched by a spec in {@code previous} but by none in {@code current}.
+     */
+    public static List<String> getRemovedPackageNames(Collection<String> previous, Collection<String> current) {
+        Set<String> names = new TreeSet<>();
+        for (String pkg : current) {
+            names.add(getPackageName(pkg));
+        }
+        Set<String> removed = new TreeSet<>();
+        for (String pkg : previous) {
+            String name = getPackageName(pkg);
+            if (!names.contains(name)) {
+                removed.add(name);
+            }
+        }
+        return new ArrayList<>(removed);
+    }
+
+    private static Set<String> getPythonSpecs(Set<String> packages) {
+        Set<String> pythonSpecs = new TreeSet<>();
+        for (String pkg : packages) {
+            if (PYTHON_PACKAGE.equals(getPackageName(pkg))) {
+                pythonSpecs.add(pkg);
+            }
+        }
+        return pythonSpecs;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads the Miniconda installer into a shared cache, splitting the file into byte ranges fetched over parallel
+ * connections when the server supports range requests.
+ *
+ * <p>Each range is written to its own part file, so an interrupted download resumes from the bytes already on disk.
+ * The parts are joined and, if a SHA-256 is configured, verified before the installer is moved into place; the cached
+ * installer is verified again before it is reused.
+ *
+ * @author agent
+ */
+public final class InstallerDownloader {
+    private static final Logger LOG = LoggerFactory.getLogger(InstallerDownloader.class);
+
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final String PART_SUFFIX = ".part";
+    private static final long MIN_CHUNK_SIZE = 1024L * 1024L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int TIMEOUT_MILLIS = 60 * 1000;
+
+    private final URL url;
+    private final File destination;
+    private final String sha256;
+    private final int connections;
+
+    public InstallerDownloader(URL url, File destination, String sha256, int connections) {
+        this.url = Objects.requireNonNull(url, "url must not be null");
+        this.destination = Objects.requireNonNull(destination, "destination must not be null");
+        this.sha256 = sha256;
+        this.connections = Math.max(1, connections);
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public File getDestination() {
+        return destination;
+    }
+
+    /**
+     * Makes sure the verified installer exists at {@link #getDestination()}, downloading it if necessary.
+     */
+    public void download() throws IOException {
+        try (CrossProcessLock ignored = CrossProcessLock.acquire(sibling(LOCK_SUFFIX))) {
+            if (destination.isFile()) {
+                if (matchesChecksum(destination.toPath())) {
+                    LOG.info("Using cached Miniconda installer {}", destination);
+                    return;
+                }
+                LOG.warn("Cached Miniconda installer {} does not match its checksum, downloading again", destination);
+                Files.delete(destination.toPath());
+            }
+
+            RemoteFile remote = probe();
+            List<Chunk> chunks = plan(remote);
+            LOG.info("Downloading {} ({} bytes) over {} connections", url, remote.length, chunks.size());
+            fetchAll(chunks);
+
+            Path assembled = sibling(PART_SUFFIX).toPath();
+            try (OutputStream out = Files.newOutputStream(assembled)) {
+                for (Chunk chunk : chunks) {
+                    Files.copy(chunk.file.toPath(), out);
+                }
+            }
+            for (Chunk chunk : chunks) {
+                Files.delete(chunk.file.toPath());
+            }
+            if (!matchesChecksum(assembled)) {
+                Files.delete(assembled);
+                throw new IOException("Downloaded " + url + " does not match the expected SHA-256 " + sha256);
+            }
+            Files.move(assembled, destination.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private RemoteFile probe() throws IOException {
+        URLConnection connection = openConnection();
+        if (!(connection instanceof HttpURLConnection)) {
+            return new RemoteFile(-1L, false);
+        }
+        HttpURLConnection http = (HttpURLConnection) connection;
+        try {
+            http.setRequestMethod("HEAD");
+            if (http.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response " + http.getResponseCode() + " for " + url);
+            }
+            String contentLength = http.getHeaderField("Content-Length");
+            long length = contentLength == null ? -1L : Long.parseLong(contentLength.trim());
+            return new RemoteFile(length, length > 0 && "bytes".equalsIgnoreCase(http.getHeaderField("Accept-Ranges")));
+        } finally {
+            http.disconnect();
+        }
+    }
+
+    private List<Chunk> plan(RemoteFile remote) {
+        List<Chunk> chunks = new ArrayList<>();
+        if (!remote.acceptsRanges) {
+            chunks.add(new Chunk(sibling(PART_SUFFIX + "0"), 0L, remote.length, false));
+            return chunks;
+        }
+        long count = Math.max(1L, Math.min(connections, remote.length / MIN_CHUNK_SIZE));
+        long chunkSize = (remote.length + count - 1) / count;
+        // part files are named by the total length, so parts of a different version of the file are never mixed in
+        String prefix = "." + remote.length + PART_SUFFIX;
+        for (int i = 0; i < count; i++) {
+            long start = i * chunkSize;
+            long length = Math.min(chunkSize, remote.length - start);
+            chunks.add(new Chunk(sibling(prefix + i), start, length, true));
+        }
+        return chunks;
+    }
+
+    private void fetchAll(List<Chunk> chunks) throws IOException {
+        if (chunks.size() == 1) {
+            fetch(chunks.get(0));
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(chunks.size());
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (final Chunk chunk : chunks) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        fetch(chunk);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to download " + url, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + url, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void fetch(Chunk chunk) throws IOException {
+        Files.createDirectories(chunk.file.getAbsoluteFile().getParentFile().toPath());
+        long existing = chunk.file.isFile() ? chunk.file.length() : 0L;
+        if (!chunk.ranged || existing > chunk.length) {
+            existing = 0L;
+        } else if (existing == chunk.length) {
+            LOG.debug("Part {} was already downloaded", chunk.file);
+            return;
+        }
+
+        URLConnection connection = openConnection();
+        int expectedResponse = HttpURLConnection.HTTP_OK;
+        if (chunk.ranged) {
+            long end = chunk.start + chunk.length - 1;
+            connection.setRequestProperty("Range", "bytes=" + (chunk.start + existing) + "-" + end);
+            expectedResponse = HttpURLConnection.HTTP_PARTIAL;
+            if (existing > 0) {
+                LOG.info("Resuming download of {} at byte {}", chunk.file, chunk.start + existing);
+            }
+        }
+        if (connection instanceof HttpURLConnection) {
+            int response = ((HttpURLConnection) connection).getResponseCode();
+            if (response != expectedResponse) {
+                throw new IOException("Unexpected response " + response + " for " + url);
+            }
+        }
+
+        try (InputStream in = connection.getInputStream();
+                OutputStream out = new FileOutputStream(chunk.file, existing > 0)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        if (chunk.length >= 0 && chunk.file.length() != chunk.length) {
+            throw new IOException("Download of " + url + " ended after " + chunk.file.length() + " of "
+                    + chunk.length + " bytes of " + chunk.file.getName());
+        }
+    }
+
+    private URLConnection openConnection() throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    private boolean matchesChecksum(Path file) throws IOException {
+        return sha256 == null || sha256.equalsIgnoreCase(Hashes.sha256(file));
+    }
+
+    private File sibling(String suffix) {
+        return new File(destination.getAbsoluteFile().getParentFile(), destination.getName() + suffix);
+    }
+
+    private static final class RemoteFile {
+        private final long length;
+        private final boolean acceptsRanges;
+
+        RemoteFile(long length, boolean acceptsRanges) {
+            this.length = length;
+            this.acceptsRanges = acceptsRanges;
+        }
+    }
+
+    private static final class Chunk {
+        private final File file;
+        private final long start;
+        private final long length;
+        private final boolean ranged;
+
+        Chunk(File file, long start, long length, boolean ranged) {
+            this.file = file;
+            this.start = start;
+            this.length = length;
+            this.ranged = ranged;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unpacks a Miniconda shell installer from Java so that only the linking step runs in the installer script.
+ *
+ * <p>The installers are a bash header followed by an uncompressed tar payload holding one bzip2 compressed tarball per
+ * package, which the header extracts one after the other before linking them into the prefix. This class copies the
+ * payload into a staging directory straight from the installer file, extracts the package tarballs in parallel and
+ * writes a copy of the header in which the extraction steps pick up the staged files instead. Bytecode compilation
+ * the header runs after linking is likewise moved out and run in parallel afterwards.
+ *
+ * <p>Installers whose header does not have the expected extraction steps are not supported, in which case
+ * {@link #read(File)} returns {@code null} and the installer should be run as is.
+ *
+ * @author agent
+ */
+public final class InstallerExtractor {
+    private static final Logger LOG = LoggerFactory.getLogger(InstallerExtractor.class);
+
+    private static final byte[] END_HEADER = "@@END_HEADER@@\n".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_HEADER_SIZE = 1024 * 1024;
+    private static final int BLOCK_SIZE = 512;
+    private static final String PACKAGE_SUFFIX = ".tar.bz2";
+    private static final String PACKAGES_DIRECTORY = "pkgs";
+    private static final String PRECONDA = "preconda.tar.bz2";
+
+    private static final Pattern PAYLOAD_EXTRACTION =
+            Pattern.compile("tail -n \\+?\\d+ \"?\\$THIS_PATH\"? \\| tar xf -");
+    private static final Pattern PRECONDA_EXTRACTION =
+            Pattern.compile("bunzip2 -c \"?\\$PRECONDA\"? \\| tar -xf - --no-same-owner");
+    private static final Pattern PACKAGE_EXTRACTION =
+            Pattern.compile("tar -xjf \"?\\$\\{?DIST}?\\.tar\\.bz2\"? -C \"?\\$\\{?DIST}?\"? --no-same-owner");
+    private static final Pattern COMPILATION = Pattern.compile("(?m)^([ \\t]*)[^\\n#]*-m compileall[^\\n\\\\]*$");
+    private static final Pattern SIZE_CHECK = Pattern.compile("wc -c \"?\\$THIS_PATH\"?");
+    private static final Pattern CHECKSUM =
+            Pattern.compile("(?m)^([ \\t]*)MD5=\\$\\([^\\n]*\\$THIS_PATH[^\\n]*\\)[ \\t]*$");
+    private static final Pattern EXPECTED_CHECKSUM = Pattern.compile("echo \"?\\$MD5\"? \\| grep ([0-9a-fA-F]{32})");
+
+    private final File installer;
+    private final String header;
+    private final long payloadOffset;
+
+    private InstallerExtractor(File installer, String header, long payloadOffset) {
+        this.installer = installer;
+        this.header = header;
+        this.payloadOffset = payloadOffset;
+    }
+
+    /**
+     * Reads the header of {@code installer}, returning {@code null} if it is not a shell installer this class can
+     * extract.
+     */
+    public static InstallerExtractor read(File installer) throws IOException {
+        byte[] start;
+        try (FileChannel channel = FileChannel.open(installer.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), MAX_HEADER_SIZE));
+            read(channel, buffer, 0);
+            start = Arrays.copyOf(buffer.array(), buffer.position());
+        }
+        int end = indexOf(start, END_HEADER);
+        if (end < 0) {
+            LOG.info("{} has no payload marker", installer);
+            return null;
+        }
+        String header = new String(start, 0, end + END_HEADER.length, StandardCharsets.UTF_8);
+        if (!PAYLOAD_EXTRACTION.matcher(header).find()) {
+            LOG.info("{} does not extract its payload with tar", installer);
+            return null;
+        }
+        return new InstallerExtractor(installer, header, end + END_HEADER.length);
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        outer:
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the installer compiles bytecode after linking, in which case {@link #compileBytecode} has to be
+     * run once the script written by {@link #writeInstallScript} has finished.
+     */
+    public boolean compilesBytecode() {
+        return COMPILATION.matcher(header).find();
+    }
+
+    /**
+     * Extracts the payload and the package tarballs in it into {@code staging}, running {@code threads} extractions at
+     * a time.
+     */
+    public void extractPayload(File staging, int threads) throws IOException {
+        Files.createDirectories(staging.toPath());
+        List<File> tarballs = extractTar(staging.toPath());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Void>> extractions = new ArrayList<>();
+            for (final File tarball : tarballs) {
+                extractions.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException, InterruptedException {
+                        extractPackage(tarball);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> extraction : extractions) {
+                extraction.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting " + installer, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to extract " + installer, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Copies the entries of the tar payload into {@code staging}, transferring file contents directly from the
+     * installer, and returns the package tarballs among them.
+     */
+    private List<File> extractTar(Path staging) throws IOException {
+        List<File> tarballs = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(installer.toPath(), StandardOpenOption.READ)) {
+            long position = payloadOffset;
+            String longName = null;
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+            while (true) {
+                block.clear();
+                read(channel, block, position);
+                if (block.hasRemaining() || isZero(block.array())) {
+                    break;
+                }
+                byte[] entry = block.array();
+                position += BLOCK_SIZE;
+                long size = parseOctal(entry, 124, 12);
+                char type = (char) entry[156];
+                String name = longName != null ? longName : parseName(entry);
+                longName = null;
+
+                if (type == 'L') {
+                    ByteBuffer nameBuffer = ByteBuffer.allocate((int) size);
+                    read(channel, nameBuffer, position);
+                    longName = parseString(nameBuffer.array(), 0, (int) size);
+                } else {
+                    Path path = resolve(staging, name);
+                    if (type == '5') {
+                        Files.createDirectories(path);
+                    } else if (type == '2') {
+                        Path target = Paths.get(parseString(entry, 157, 100));
+                        if (!path.getParent().resolve(target).normalize().startsWith(staging)) {
+                            throw new IOException("Payload entry " + name + " links to " + target
+                                    + " outside of " + staging);
+                        }
+                        Files.createDirectories(path.getParent());
+                        Files.createSymbolicLink(path, target);
+                    } else if (type == '1') {
+                        Files.createDirectories(path.getParent());
+                        Files.createLink(path, resolve(staging, parseString(entry, 157, 100)));
+                    } else if (type == '0' || type == '\0') {
+                        Files.createDirectories(path.getParent());
+                        try (FileOutputStream out = new FileOutputStream(path.toFile())) {
+                            long transferred = 0;
+                            while (transferred < size) {
+                                long count = channel.transferTo(position + transferred, size - transferred,
+                                        out.getChannel());
+                                if (count <= 0) {
+                                    throw new IOException("Truncated payload in " + installer);
+                                }
+                                transferred += count;
+                            }
+                        }
+                        if ((parseOctal(entry, 100, 8) & 0111) != 0) {
+                            path.toFile().setExecutable(true, false);
+                        }
+                        if (isPackage(staging, path)) {
+                            tarballs.add(path.toFile());
+                        }
+                    } else {
+                        LOG.debug("Skipping tar entry {} of type {} in {}", name, type, installer);
+                    }
+                }
+                position += (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+            }
+        }
+        return tarballs;
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return;
+            }
+        }
+    }
+
+    private static boolean isPackage(Path staging, Path file) {
+        String name = file.getFileName().toString();
+        return name.equals(PRECONDA) && file.getParent().equals(staging)
+                || name.endsWith(PACKAGE_SUFFIX) && file.getParent().equals(staging.resolve(PACKAGES_DIRECTORY));
+    }
+
+    /**
+     * Extracts a package tarball the way the installer header would: packages into a directory named after them and
+     * the preconda tarball into the prefix itself.
+     */
+    private static void extractPackage(File tarball) throws IOException, InterruptedException {
+        String name = tarball.getName();
+        File directory = name.equals(PRECONDA)
+                ? tarball.getParentFile()
+                : new File(tarball.getParentFile(), name.substring(0, name.length() - PACKAGE_SUFFIX.length()));
+        Files.createDirectories(directory.toPath());
+        ProcessBuilder builder = new ProcessBuilder(
+                "tar", "-xjf", tarball.getAbsolutePath(), "-C", directory.getAbsolutePath(), "--no-same-owner");
+        builder.redirectErrorStream(true);
+        run(builder, "extract " + tarball);
+        Files.delete(tarball.toPath());
+    }
+
+    /**
+     * Writes the header of the installer to {@code script}, with its extraction steps replaced by moving the files
+     * staged by {@link #extractPayload} into the prefix, and with bytecode compilation removed. The checks of the
+     * installer's size and payload checksum, which would otherwise run against the script, are made to pass.
+     *
+     * @return whether the header could be rewritten; if not, the installer has to be run as is
+     */
+    public boolean writeInstallScript(File staging, File script) throws IOException {
+        String stagingPath = staging.getAbsolutePath();
+        if (stagingPath.contains("'")) {
+            return false;
+        }
+        String moveStaged = "find '" + stagingPath + "' -mindepth 1 -maxdepth 1 -exec mv {} \"$PREFIX\"/ \\;";
+        String patched = PAYLOAD_EXTRACTION.matcher(header).replaceFirst(Matcher.quoteReplacement(moveStaged));
+
+        boolean hasPreconda = new File(staging, PRECONDA).exists()
+                || PRECONDA_EXTRACTION.matcher(header).find();
+        if (hasPreconda) {
+            if (!PRECONDA_EXTRACTION.matcher(patched).find()) {
+                LOG.info("Cannot find the preconda extraction in the header of {}", installer);
+                return false;
+            }
+            patched = PRECONDA_EXTRACTION.matcher(patched).replaceAll("true");
+        }
+        if (PACKAGE_EXTRACTION.matcher(patched).find()) {
+            patched = PACKAGE_EXTRACTION.matcher(patched).replaceAll("true");
+        } else if (new File(staging, PACKAGES_DIRECTORY).isDirectory()) {
+            LOG.info("Cannot find the package extraction in the header of {}", installer);
+            return false;
+        }
+        patched = COMPILATION.matcher(patched).replaceAll("$1true");
+
+        patched = SIZE_CHECK.matcher(patched).replaceAll("echo " + installer.length());
+        if (CHECKSUM.matcher(patched).find()) {
+            Matcher expected = EXPECTED_CHECKSUM.matcher(patched);
+            if (!expected.find()) {
+                LOG.info("Cannot find the expected payload checksum in the header of {}", installer);
+                return false;
+            }
+            patched = CHECKSUM.matcher(patched).replaceAll("$1MD5=" + expected.group(1));
+        }
+
+        Files.write(script.toPath(), patched.getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * Compiles the bytecode of the standard library and site-packages of {@code prefix}, running one
+     * {@code compileall} process per processor on a share of the top-level modules.
+     */
+    public static void compileBytecode(File prefix, int threads) throws IOException {
+        File python = new File(prefix, "bin/python");
+        List<List<String>> shares = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            shares.add(new ArrayList<String>());
+        }
+        int next = 0;
+        File[] libraries = new File(prefix, "lib").listFiles();
+        for (File library : libraries == null ? new File[0] : libraries) {
+            File[] modules = library.getName().startsWith("python") ? library.listFiles() : null;
+            for (File module : modules == null ? new File[0] : modules) {
+                shares.get(next++ % shares.size()).add(module.getAbsolutePath());
+            }
+        }
+
+        List<Process> processes = new ArrayList<>();
+        List<File> logs = new ArrayList<>();
+        try {
+            for (List<String> share : shares) {
+                if (share.isEmpty()) {
+                    continue;
+                }
+                List<String> command = new ArrayList<>(
+                        Arrays.asList(python.getPath(), "-E", "-s", "-m", "compileall", "-q"));
+                command.addAll(share);
+                File log = File.createTempFile("compileall", ".log");
+                logs.add(log);
+                ProcessBuilder builder = new ProcessBuilder(command);
+                builder.redirectErrorStream(true);
+                builder.redirectOutput(log);
+                processes.add(builder.start());
+            }
+            for (int i = 0; i < processes.size(); i++) {
+                // the standard library has test modules with deliberate syntax errors, which the installers' own
+                // compileall reports without failing the install either
+                if (processes.get(i).waitFor() != 0) {
+                    LOG.debug("compileall reported errors: {}",
+                            new String(Files.readAllBytes(logs.get(i).toPath()), StandardCharsets.UTF_8));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compiling bytecode in " + prefix, e);
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (File log : logs) {
+                Files.deleteIfExists(log.toPath());
+            }
+        }
+    }
+
+    private static void run(ProcessBuilder builder, String description) throws IOException, InterruptedException {
+        Process process = builder.start();
+        String output = readFully(process);
+        int exitValue = process.waitFor();
+        if (exitValue != 0) {
+            throw new IOException("Failed to " + description + " (exit value " + exitValue + "): " + output);
+        }
+    }
+
+    private static String readFully(Process process) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = process.getInputStream().read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toString("UTF-8");
+    }
+
+    /**
+     * Resolves a payload entry against {@code staging}, rejecting entries outside of it as well as entries that would
+     * be written through a symbolic link extracted earlier, which could point anywhere once other links are involved.
+     */
+    private static Path resolve(Path staging, String name) throws IOException {
+        Path path = staging.resolve(name).normalize();
+        if (!path.startsWith(staging)) {
+            throw new IOException("Payload entry " + name + " is outside of " + staging);
+        }
+        for (Path element = path; !element.equals(staging); element = element.getParent()) {
+            if (Files.isSymbolicLink(element)) {
+                throw new IOException("Payload entry " + name + " is written through the symbolic link " + element);
+            }
+        }
+        return path;
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String parseName(byte[] entry) {
+        String name = parseString(entry, 0, 100);
+        // only POSIX archives have a name prefix, GNU ones use the field for other purposes
+        boolean posix = "ustar".equals(parseString(entry, 257, 5)) && entry[262] == 0;
+        String prefix = posix ? parseString(entry, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static String parseString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long parseOctal(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '7') {
+                value = value * 8 + (b - '0');
+            } else if (b != ' ' || value != 0) {
+                break;
+            }
+        }
+        return value;
+    }
+}
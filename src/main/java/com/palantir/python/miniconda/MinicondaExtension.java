@@ -16,13 +16,19 @@
 
 package com.palantir.python.miniconda;
 
+import groovy.lang.Closure;
 import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import org.gradle.api.NamedDomainObjectContainer;
+import org.gradle.api.NamedDomainObjectFactory;
 import org.gradle.api.Project;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,10 +45,23 @@ public class MinicondaExtension {
     private static final File DEFAULT_BOOTSTRAP_DIRECTORY_PREFIX =
             new File(System.getProperty("user.home"), ".miniconda-bootstrap");
     private static final String DEFAULT_BUILD_ENVIRONMENT_DIRECTORY = "build/miniconda";
+    private static final String DEFAULT_ENVIRONMENTS_DIRECTORY = "build/conda-environments";
     private static final String DEFAULT_META_YAML_DIR = "conda_recipe/";
     private static final int DEFAULT_PYTHON_VERSION = 2;
+    private static final String DEFAULT_ENVIRONMENT_CACHE_DIRECTORY = "environments";
+    private static final int DEFAULT_ENVIRONMENT_CACHE_MAX_ENTRIES = 10;
+    private static final String DEFAULT_LOCAL_CHANNEL_MIRROR_DIRECTORY = "channel-mirror";
+    private static final String DEFAULT_LOCK_FILE = "conda.lock";
+    private static final String DEFAULT_INSTALLER_REPOSITORY_URL = "https://repo.continuum.io";
+    private static final String DEFAULT_INSTALLER_CACHE_DIRECTORY = "installers";
+    private static final int DEFAULT_INSTALLER_DOWNLOAD_CONNECTIONS = 4;
+    private static final String DEFAULT_PIP_WHEELHOUSE_DIRECTORY = "wheelhouse";
+    private static final String DEFAULT_ENVIRONMENT_ARCHIVE_DIRECTORY = "archives";
+    private static final String DEFAULT_SHARED_PACKAGE_CACHE_DIRECTORY = "pkgs";
 
     private final Project project;
+    private final NamedDomainObjectContainer<CondaEnvironment> environments;
+    private final CondaTimings timings;
 
     private String minicondaVersion;
     private String condaBuildVersion;
@@ -51,16 +70,56 @@ public class MinicondaExtension {
     private File buildEnvironmentDirectory = null;
     private File buildOutputDirectory = null;
     private Path metaYaml = null;
+    private List<Path> recipes = new ArrayList<>();
+    private int maxParallelCondaBuilds = 0;
     private List<String> packages = new ArrayList<>();
     private List<String> channels = new ArrayList<>(Collections.singletonList(DEFAULT_CHANNEL));
+    private boolean useEnvironmentCache = false;
+    private File environmentCacheDirectory = null;
+    private int environmentCacheMaxEntries = DEFAULT_ENVIRONMENT_CACHE_MAX_ENTRIES;
+    private long environmentCacheMaxSizeMb = 0L;
+    private EnvironmentMaterialization environmentMaterialization = EnvironmentMaterialization.CLONE;
+    private boolean useLocalChannelMirror = false;
+    private File localChannelMirrorDirectory = null;
+    private boolean offline = false;
+    private boolean useLockFile = false;
+    private File lockFile = null;
+    private String installerRepositoryUrl = DEFAULT_INSTALLER_REPOSITORY_URL;
+    private String installerSha256 = null;
+    private int installerDownloadConnections = DEFAULT_INSTALLER_DOWNLOAD_CONNECTIONS;
+    private File installerCacheDirectory = null;
+    private File environmentsDirectory = null;
+    private List<String> pipPackages = new ArrayList<>();
+    private File pipWheelhouseDirectory = null;
+    private List<String> pipFindLinks = new ArrayList<>();
+    private boolean pipNoIndex = false;
+    private boolean useCondaWorker = false;
+    private boolean detailedCondaTimings = false;
+    private File environmentArchiveDirectory = null;
+    private boolean trackEnvironmentFiles = false;
+    private boolean parallelInstallerExtraction = false;
+    private List<File> readOnlyBootstrapPrefixes = new ArrayList<>();
+    private boolean useSharedPackageCache = false;
+    private File sharedPackageCacheDirectory = null;
+    private long sharedPackageCacheMaxSizeMb = 0L;
+    private List<Object> resolvedBootstrapSettings = null;
+    private File resolvedBootstrapDirectory = null;
 
     public MinicondaExtension(Project project) {
         this.project = project;
+        this.timings = new CondaTimings(project.getPath());
+        this.environments = project.container(CondaEnvironment.class, new NamedDomainObjectFactory<CondaEnvironment>() {
+            @Override
+            public CondaEnvironment create(String name) {
+                return new CondaEnvironment(name, MinicondaExtension.this);
+            }
+        });
     }
 
     public final void validate() {
         Objects.requireNonNull(minicondaVersion, "miniconda.minicondaVersion must be set.");
         Objects.requireNonNull(bootstrapDirectoryPrefix, "miniconda.bootstrapDirectoryPrefix must not be null.");
+        Objects.requireNonNull(readOnlyBootstrapPrefixes, "miniconda.readOnlyBootstrapPrefixes must not be null.");
         Objects.requireNonNull(packages, "miniconda.packages must not be null.");
         if (packages.isEmpty()) {
             throw new IllegalArgumentException("miniconda.packages must contain at least one requirement.");
@@ -69,6 +128,36 @@ public class MinicondaExtension {
         if (channels.isEmpty()) {
             throw new IllegalArgumentException("miniconda.channels must contain at least one channel.");
         }
+        if (maxParallelCondaBuilds < 0) {
+            throw new IllegalArgumentException("miniconda.maxParallelCondaBuilds must not be negative.");
+        }
+        if (environmentCacheMaxEntries < 0) {
+            throw new IllegalArgumentException("miniconda.environmentCacheMaxEntries must not be negative.");
+        }
+        if (environmentCacheMaxSizeMb < 0) {
+            throw new IllegalArgumentException("miniconda.environmentCacheMaxSizeMb must not be negative.");
+        }
+        if (sharedPackageCacheMaxSizeMb < 0) {
+            throw new IllegalArgumentException("miniconda.sharedPackageCacheMaxSizeMb must not be negative.");
+        }
+        Objects.requireNonNull(environmentMaterialization, "miniconda.environmentMaterialization must not be null.");
+        Objects.requireNonNull(installerRepositoryUrl, "miniconda.installerRepositoryUrl must not be null.");
+        if (installerDownloadConnections < 1) {
+            throw new IllegalArgumentException("miniconda.installerDownloadConnections must be at least 1.");
+        }
+        Objects.requireNonNull(pipPackages, "miniconda.pipPackages must not be null.");
+        Objects.requireNonNull(pipFindLinks, "miniconda.pipFindLinks must not be null.");
+        for (CondaEnvironment environment : environments) {
+            Objects.requireNonNull(environment.getPackages(),
+                    "miniconda.environments." + environment.getName() + ".packages must not be null.");
+            if (environment.getPackages().isEmpty()) {
+                throw new IllegalArgumentException("miniconda.environments." + environment.getName()
+                        + ".packages must contain at least one requirement.");
+            }
+        }
+        if (offline && !useLocalChannelMirror) {
+            throw new IllegalArgumentException("miniconda.offline requires miniconda.useLocalChannelMirror.");
+        }
         if (pythonVersion <= 1) {
             throw new IllegalArgumentException("miniconda.pythonVersion must be 2 or greater.");
         } else if (pythonVersion > 3) {
@@ -77,8 +166,74 @@ public class MinicondaExtension {
         }
     }
 
-    public final File getBootstrapDirectory() {
-        return bootstrapDirectoryPrefix.toPath()
+    /**
+     * Returns the Miniconda install to use: the first verified install in {@link #getReadOnlyBootstrapPrefixes()} or
+     * else {@link #getWritableBootstrapDirectory()}. If the project has a conda recipe, read-only installs only qualify
+     * if they already contain conda-build, of {@link #getCondaBuildVersion()} if set, as it cannot be installed into
+     * them. The result is resolved once per build unless the settings it depends on change.
+     */
+    public final synchronized File getBootstrapDirectory() {
+        List<File> candidates = new ArrayList<>();
+        for (File prefix : readOnlyBootstrapPrefixes) {
+            candidates.add(getBootstrapDirectory(prefix));
+        }
+        File writableBootstrapDirectory = getWritableBootstrapDirectory();
+        boolean requiresCondaBuild = hasRecipe();
+        List<Object> settings = new ArrayList<Object>(candidates);
+        settings.add(writableBootstrapDirectory);
+        settings.add(requiresCondaBuild);
+        settings.add(String.valueOf(condaBuildVersion));
+        if (!settings.equals(resolvedBootstrapSettings)) {
+            resolvedBootstrapSettings = settings;
+            resolvedBootstrapDirectory = writableBootstrapDirectory;
+            for (File candidate : candidates) {
+                if (BootstrapVerifier.isVerified(candidate) && (!requiresCondaBuild || hasCondaBuild(candidate))) {
+                    resolvedBootstrapDirectory = candidate;
+                    break;
+                }
+            }
+        }
+        return resolvedBootstrapDirectory;
+    }
+
+    /**
+     * Returns whether {@code bootstrapDirectory} is an install this build owns, rather than one in a read-only
+     * bootstrap prefix, and so may install packages into it.
+     */
+    public final boolean isWritableBootstrapDirectory(File bootstrapDirectory) {
+        return getWritableBootstrapDirectory().equals(bootstrapDirectory);
+    }
+
+    private boolean hasRecipe() {
+        for (Path recipe : getRecipes()) {
+            if (Files.exists(recipe)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasCondaBuild(File bootstrapDirectory) {
+        Map<String, String> installed = CondaMetadata.getInstalledPackages(bootstrapDirectory);
+        String installedVersion = installed == null ? null : installed.get("conda-build");
+        if (installedVersion == null || condaBuildVersion != null && !condaBuildVersion.equals(installedVersion)) {
+            LOG.info("Not using Miniconda install {}: it does not contain conda-build{}", bootstrapDirectory,
+                    condaBuildVersion == null ? "" : " " + condaBuildVersion);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the Miniconda install in {@link #getBootstrapDirectoryPrefix()}, which {@code bootstrapPython} installs
+     * if no read-only install can be used.
+     */
+    public final File getWritableBootstrapDirectory() {
+        return getBootstrapDirectory(bootstrapDirectoryPrefix);
+    }
+
+    private File getBootstrapDirectory(File prefix) {
+        return prefix.toPath()
                 .resolve("python-" + pythonVersion)
                 .resolve("miniconda-" + minicondaVersion)
                 .toFile();
@@ -130,6 +285,36 @@ public class MinicondaExtension {
         return metaYaml;
     }
 
+    /**
+     * Returns the recipes built by {@code condaBuild}, defaulting to just {@link #getMetaYaml()}.
+     */
+    public final List<Path> getRecipes() {
+        if (recipes.isEmpty()) {
+            return Collections.singletonList(getMetaYaml());
+        }
+        return Collections.unmodifiableList(recipes);
+    }
+
+    public final void setRecipes(List<?> recipes) {
+        List<Path> paths = new ArrayList<>();
+        for (Object recipe : recipes) {
+            if (recipe instanceof Path) {
+                paths.add((Path) recipe);
+            } else {
+                paths.add(project.file(recipe).toPath());
+            }
+        }
+        this.recipes = paths;
+    }
+
+    public final int getMaxParallelCondaBuilds() {
+        return maxParallelCondaBuilds;
+    }
+
+    public final void setMaxParallelCondaBuilds(int maxParallelCondaBuilds) {
+        this.maxParallelCondaBuilds = maxParallelCondaBuilds;
+    }
+
     public final void setBuildEnvironmentDirectory(String buildEnvironmentDirectory) {
         setBuildEnvironmentDirectory(new File(buildEnvironmentDirectory));
     }
@@ -193,4 +378,342 @@ public class MinicondaExtension {
     public final void setChannels(List<String> channels) {
         this.channels = channels;
     }
+
+    public final boolean getUseEnvironmentCache() {
+        return useEnvironmentCache;
+    }
+
+    public final void setUseEnvironmentCache(boolean useEnvironmentCache) {
+        this.useEnvironmentCache = useEnvironmentCache;
+    }
+
+    public final File getEnvironmentCacheDirectory() {
+        if (environmentCacheDirectory == null) {
+            return new File(bootstrapDirectoryPrefix, DEFAULT_ENVIRONMENT_CACHE_DIRECTORY);
+        }
+        return environmentCacheDirectory;
+    }
+
+    public final void setEnvironmentCacheDirectory(String environmentCacheDirectory) {
+        setEnvironmentCacheDirectory(new File(environmentCacheDirectory));
+    }
+
+    public final void setEnvironmentCacheDirectory(Path environmentCacheDirectory) {
+        setEnvironmentCacheDirectory(environmentCacheDirectory.toFile());
+    }
+
+    public final void setEnvironmentCacheDirectory(File environmentCacheDirectory) {
+        this.environmentCacheDirectory = environmentCacheDirectory;
+    }
+
+    public final int getEnvironmentCacheMaxEntries() {
+        return environmentCacheMaxEntries;
+    }
+
+    public final void setEnvironmentCacheMaxEntries(int environmentCacheMaxEntries) {
+        this.environmentCacheMaxEntries = environmentCacheMaxEntries;
+    }
+
+    public final long getEnvironmentCacheMaxSizeMb() {
+        return environmentCacheMaxSizeMb;
+    }
+
+    public final void setEnvironmentCacheMaxSizeMb(long environmentCacheMaxSizeMb) {
+        this.environmentCacheMaxSizeMb = environmentCacheMaxSizeMb;
+    }
+
+    public final EnvironmentMaterialization getEnvironmentMaterialization() {
+        return environmentMaterialization;
+    }
+
+    public final void setEnvironmentMaterialization(String environmentMaterialization) {
+        setEnvironmentMaterialization(
+                EnvironmentMaterialization.valueOf(environmentMaterialization.toUpperCase(Locale.ROOT)));
+    }
+
+    public final void setEnvironmentMaterialization(EnvironmentMaterialization environmentMaterialization) {
+        this.environmentMaterialization = environmentMaterialization;
+    }
+
+    public final boolean getUseLocalChannelMirror() {
+        return useLocalChannelMirror;
+    }
+
+    public final void setUseLocalChannelMirror(boolean useLocalChannelMirror) {
+        this.useLocalChannelMirror = useLocalChannelMirror;
+    }
+
+    public final File getLocalChannelMirrorDirectory() {
+        if (localChannelMirrorDirectory == null) {
+            return new File(bootstrapDirectoryPrefix, DEFAULT_LOCAL_CHANNEL_MIRROR_DIRECTORY);
+        }
+        return localChannelMirrorDirectory;
+    }
+
+    public final void setLocalChannelMirrorDirectory(String localChannelMirrorDirectory) {
+        setLocalChannelMirrorDirectory(new File(localChannelMirrorDirectory));
+    }
+
+    public final void setLocalChannelMirrorDirectory(Path localChannelMirrorDirectory) {
+        setLocalChannelMirrorDirectory(localChannelMirrorDirectory.toFile());
+    }
+
+    public final void setLocalChannelMirrorDirectory(File localChannelMirrorDirectory) {
+        this.localChannelMirrorDirectory = localChannelMirrorDirectory;
+    }
+
+    public final boolean getOffline() {
+        return offline;
+    }
+
+    public final void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    public final boolean getUseLockFile() {
+        return useLockFile;
+    }
+
+    public final void setUseLockFile(boolean useLockFile) {
+        this.useLockFile = useLockFile;
+    }
+
+    public final File getLockFile() {
+        if (lockFile == null) {
+            return project.file(DEFAULT_LOCK_FILE);
+        }
+        return lockFile;
+    }
+
+    public final void setLockFile(String lockFile) {
+        setLockFile(new File(lockFile));
+    }
+
+    public final void setLockFile(Path lockFile) {
+        setLockFile(lockFile.toFile());
+    }
+
+    public final void setLockFile(File lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    public final String getInstallerRepositoryUrl() {
+        return installerRepositoryUrl;
+    }
+
+    public final void setInstallerRepositoryUrl(String installerRepositoryUrl) {
+        this.installerRepositoryUrl = installerRepositoryUrl;
+    }
+
+    public final String getInstallerSha256() {
+        return installerSha256;
+    }
+
+    public final void setInstallerSha256(String installerSha256) {
+        this.installerSha256 = installerSha256;
+    }
+
+    public final int getInstallerDownloadConnections() {
+        return installerDownloadConnections;
+    }
+
+    public final void setInstallerDownloadConnections(int installerDownloadConnections) {
+        this.installerDownloadConnections = installerDownloadConnections;
+    }
+
+    public final File getInstallerCacheDirectory() {
+        if (installerCacheDirectory == null) {
+            return new File(bootstrapDirectoryPrefix, DEFAULT_INSTALLER_CACHE_DIRECTORY);
+        }
+        return installerCacheDirectory;
+    }
+
+    public final void setInstallerCacheDirectory(String installerCacheDirectory) {
+        setInstallerCacheDirectory(new File(installerCacheDirectory));
+    }
+
+    public final void setInstallerCacheDirectory(Path installerCacheDirectory) {
+        setInstallerCacheDirectory(installerCacheDirectory.toFile());
+    }
+
+    public final void setInstallerCacheDirectory(File installerCacheDirectory) {
+        this.installerCacheDirectory = installerCacheDirectory;
+    }
+
+    /**
+     * Returns the named environments set up by {@code setupCondaEnvironments}.
+     */
+    public final NamedDomainObjectContainer<CondaEnvironment> getEnvironments() {
+        return environments;
+    }
+
+    public final void environments(Closure<?> closure) {
+        environments.configure(closure);
+    }
+
+    public final File getEnvironmentsDirectory() {
+        if (environmentsDirectory == null) {
+            return project.file(DEFAULT_ENVIRONMENTS_DIRECTORY);
+        }
+        return environmentsDirectory;
+    }
+
+    public final void setEnvironmentsDirectory(String environmentsDirectory) {
+        setEnvironmentsDirectory(new File(environmentsDirectory));
+    }
+
+    public final void setEnvironmentsDirectory(Path environmentsDirectory) {
+        setEnvironmentsDirectory(environmentsDirectory.toFile());
+    }
+
+    public final void setEnvironmentsDirectory(File environmentsDirectory) {
+        this.environmentsDirectory = environmentsDirectory;
+    }
+
+    /**
+     * Returns the pip requirements installed into the build environment by {@code installPipPackages}.
+     */
+    public final List<String> getPipPackages() {
+        return pipPackages;
+    }
+
+    public final void setPipPackages(List<String> pipPackages) {
+        this.pipPackages = pipPackages;
+    }
+
+    public final File getPipWheelhouseDirectory() {
+        if (pipWheelhouseDirectory == null) {
+            return new File(bootstrapDirectoryPrefix, DEFAULT_PIP_WHEELHOUSE_DIRECTORY);
+        }
+        return pipWheelhouseDirectory;
+    }
+
+    public final void setPipWheelhouseDirectory(String pipWheelhouseDirectory) {
+        setPipWheelhouseDirectory(new File(pipWheelhouseDirectory));
+    }
+
+    public final void setPipWheelhouseDirectory(Path pipWheelhouseDirectory) {
+        setPipWheelhouseDirectory(pipWheelhouseDirectory.toFile());
+    }
+
+    public final void setPipWheelhouseDirectory(File pipWheelhouseDirectory) {
+        this.pipWheelhouseDirectory = pipWheelhouseDirectory;
+    }
+
+    public final File getEnvironmentArchiveDirectory() {
+        if (environmentArchiveDirectory == null) {
+            return new File(bootstrapDirectoryPrefix, DEFAULT_ENVIRONMENT_ARCHIVE_DIRECTORY);
+        }
+        return environmentArchiveDirectory;
+    }
+
+    public final void setEnvironmentArchiveDirectory(String environmentArchiveDirectory) {
+        setEnvironmentArchiveDirectory(new File(environmentArchiveDirectory));
+    }
+
+    public final void setEnvironmentArchiveDirectory(Path environmentArchiveDirectory) {
+        setEnvironmentArchiveDirectory(environmentArchiveDirectory.toFile());
+    }
+
+    public final void setEnvironmentArchiveDirectory(File environmentArchiveDirectory) {
+        this.environmentArchiveDirectory = environmentArchiveDirectory;
+    }
+
+    public final boolean getUseSharedPackageCache() {
+        return useSharedPackageCache;
+    }
+
+    public final void setUseSharedPackageCache(boolean useSharedPackageCache) {
+        this.useSharedPackageCache = useSharedPackageCache;
+    }
+
+    public final File getSharedPackageCacheDirectory() {
+        if (sharedPackageCacheDirectory == null) {
+            return new File(bootstrapDirectoryPrefix, DEFAULT_SHARED_PACKAGE_CACHE_DIRECTORY);
+        }
+        return sharedPackageCacheDirectory;
+    }
+
+    public final void setSharedPackageCacheDirectory(String sharedPackageCacheDirectory) {
+        setSharedPackageCacheDirectory(new File(sharedPackageCacheDirectory));
+    }
+
+    public final void setSharedPackageCacheDirectory(Path sharedPackageCacheDirectory) {
+        setSharedPackageCacheDirectory(sharedPackageCacheDirectory.toFile());
+    }
+
+    public final void setSharedPackageCacheDirectory(File sharedPackageCacheDirectory) {
+        this.sharedPackageCacheDirectory = sharedPackageCacheDirectory;
+    }
+
+    public final long getSharedPackageCacheMaxSizeMb() {
+        return sharedPackageCacheMaxSizeMb;
+    }
+
+    public final void setSharedPackageCacheMaxSizeMb(long sharedPackageCacheMaxSizeMb) {
+        this.sharedPackageCacheMaxSizeMb = sharedPackageCacheMaxSizeMb;
+    }
+
+    public final List<String> getPipFindLinks() {
+        return pipFindLinks;
+    }
+
+    public final void setPipFindLinks(List<String> pipFindLinks) {
+        this.pipFindLinks = pipFindLinks;
+    }
+
+    public final boolean getPipNoIndex() {
+        return pipNoIndex;
+    }
+
+    public final void setPipNoIndex(boolean pipNoIndex) {
+        this.pipNoIndex = pipNoIndex;
+    }
+
+    public final boolean getUseCondaWorker() {
+        return useCondaWorker;
+    }
+
+    public final void setUseCondaWorker(boolean useCondaWorker) {
+        this.useCondaWorker = useCondaWorker;
+    }
+
+    public final boolean getDetailedCondaTimings() {
+        return detailedCondaTimings;
+    }
+
+    public final void setDetailedCondaTimings(boolean detailedCondaTimings) {
+        this.detailedCondaTimings = detailedCondaTimings;
+    }
+
+    public final boolean getTrackEnvironmentFiles() {
+        return trackEnvironmentFiles;
+    }
+
+    public final void setTrackEnvironmentFiles(boolean trackEnvironmentFiles) {
+        this.trackEnvironmentFiles = trackEnvironmentFiles;
+    }
+
+    public final boolean getParallelInstallerExtraction() {
+        return parallelInstallerExtraction;
+    }
+
+    public final void setParallelInstallerExtraction(boolean parallelInstallerExtraction) {
+        this.parallelInstallerExtraction = parallelInstallerExtraction;
+    }
+
+    public final List<File> getReadOnlyBootstrapPrefixes() {
+        return readOnlyBootstrapPrefixes;
+    }
+
+    public final void setReadOnlyBootstrapPrefixes(List<File> readOnlyBootstrapPrefixes) {
+        this.readOnlyBootstrapPrefixes = readOnlyBootstrapPrefixes;
+    }
+
+    /**
+     * Returns the timings of the conda operations of this project, reported under {@code build/reports/miniconda}.
+     */
+    public final CondaTimings getTimings() {
+        return timings;
+    }
 }
@@ -16,6 +16,9 @@
 
 package com.palantir.python.miniconda;
 
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 import org.gradle.api.Action;
@@ -34,6 +37,7 @@ public final class MinicondaInstaller {
     private static final int POTENTIAL_LEGACY_PYTHON_VERSION = 2;
     private static final VersionNumber MINIMUM_NON_LEGACY_VERSION = VersionNumber.parse("3.16.0");
     private static final String CONFIGURATION_NAME = "minicondaInstaller";
+    private static final String ORGANISATION = "miniconda";
 
     private final OperatingSystem os;
     private final MinicondaExtension miniconda;
@@ -45,7 +49,7 @@ public final class MinicondaInstaller {
 
     public void addToDependencyHandler(DependencyHandler handler) {
         final Map<String, String> map = new HashMap<>();
-        map.put("group", "miniconda");
+        map.put("group", ORGANISATION);
         map.put("name", getName());
         map.put("version", getVersion());
         ModuleDependency minicondaInstaller = (ModuleDependency) handler.add(CONFIGURATION_NAME, map);
@@ -60,6 +64,35 @@ public final class MinicondaInstaller {
         });
     }
 
+    /**
+     * Returns the installer's file name, which identifies it by name, version and classifier.
+     */
+    public String getFileName() {
+        return getName() + "-" + getVersion() + "-" + getClassifier() + "." + getExtension();
+    }
+
+    /**
+     * Returns the installer's location in a repository laid out like {@code https://repo.continuum.io}.
+     */
+    public String getUrl(String repositoryUrl) {
+        String root = repositoryUrl.endsWith("/") ? repositoryUrl : repositoryUrl + "/";
+        return root + ORGANISATION + "/" + getFileName();
+    }
+
+    /**
+     * Returns a downloader fetching this installer from {@code installerRepositoryUrl} into the installer cache.
+     */
+    public InstallerDownloader createDownloader() {
+        URL url;
+        try {
+            url = new URL(getUrl(miniconda.getInstallerRepositoryUrl()));
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("miniconda.installerRepositoryUrl is not a valid URL", e);
+        }
+        return new InstallerDownloader(url, new File(miniconda.getInstallerCacheDirectory(), getFileName()),
+                miniconda.getInstallerSha256(), miniconda.getInstallerDownloadConnections());
+    }
+
     private String getName() {
         // Versions <= 3.16 were named "Miniconda-${version}"
         if (isLegacyMiniconda()) {
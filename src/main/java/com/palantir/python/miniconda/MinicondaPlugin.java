@@ -21,8 +21,14 @@ import com.palantir.python.miniconda.tasks.CleanTaskUtils;
 import com.palantir.python.miniconda.tasks.CondaBuild;
 import com.palantir.python.miniconda.tasks.CondaBuildCheck;
 import com.palantir.python.miniconda.tasks.ConfigureRootCondaEnv;
+import com.palantir.python.miniconda.tasks.InstallPipPackages;
+import com.palantir.python.miniconda.tasks.LockCondaEnvironment;
+import com.palantir.python.miniconda.tasks.PackCondaEnvironment;
+import com.palantir.python.miniconda.tasks.PruneEnvironmentCache;
 import com.palantir.python.miniconda.tasks.SetupCondaBuild;
+import com.palantir.python.miniconda.tasks.SetupCondaEnvironments;
 import com.palantir.python.miniconda.tasks.SetupPython;
+import com.palantir.python.miniconda.tasks.VerifyCondaEnvironment;
 import org.gradle.api.Action;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
@@ -52,27 +58,41 @@ public final class MinicondaPlugin implements Plugin<Project> {
     public void apply(Project project) {
         createIvyRepository(project);
 
-        TaskContainer tasks = project.getTasks();
+        final TaskContainer tasks = project.getTasks();
         BootstrapPython bootstrapPython = BootstrapPython.createTask(tasks);
-        ConfigureRootCondaEnv configureCondaRootEnv = ConfigureRootCondaEnv.createTask(tasks, bootstrapPython);
+        final ConfigureRootCondaEnv configureCondaRootEnv = ConfigureRootCondaEnv.createTask(tasks, bootstrapPython);
+        LockCondaEnvironment lockCondaEnvironment = LockCondaEnvironment.createTask(tasks, configureCondaRootEnv);
         SetupPython setupPython = SetupPython.createTask(tasks, configureCondaRootEnv);
+        InstallPipPackages installPipPackages = InstallPipPackages.createTask(tasks, setupPython);
+        PackCondaEnvironment packCondaEnvironment = PackCondaEnvironment.createTask(tasks, setupPython);
+        VerifyCondaEnvironment verifyCondaEnvironment = VerifyCondaEnvironment.createTask(tasks, setupPython);
         SetupCondaBuild setupCondaBuild = SetupCondaBuild.createTask(tasks, configureCondaRootEnv);
         CondaBuildCheck condaBuildCheck = CondaBuildCheck.createTask(tasks, setupCondaBuild);
         CondaBuild condaBuild = CondaBuild.createTask(tasks, condaBuildCheck);
+        PruneEnvironmentCache pruneEnvironmentCache = PruneEnvironmentCache.createTask(tasks);
+        SetupCondaEnvironments.createTask(tasks, configureCondaRootEnv);
 
         Task cleanBootstrapPython = project.getTasks().getByName(CleanTaskUtils.getCleanTaskName(bootstrapPython));
         Task cleanSetupPython = project.getTasks().getByName(CleanTaskUtils.getCleanTaskName(setupPython));
         cleanBootstrapPython.dependsOn(cleanSetupPython);
 
-        project.getExtensions().create(EXTENSION_NAME, MinicondaExtension.class, project);
+        MinicondaExtension miniconda =
+                project.getExtensions().create(EXTENSION_NAME, MinicondaExtension.class, project);
+        miniconda.getEnvironments().all(new Action<CondaEnvironment>() {
+            @Override
+            public void execute(CondaEnvironment environment) {
+                SetupCondaEnvironments.createTask(tasks, configureCondaRootEnv, environment);
+            }
+        });
 
         LOG.debug("MinicondaPlugin tasks created.");
         Configuration configuration = project.getConfigurations().create(CONFIGURATION_NAME);
         project.afterEvaluate(
                 new AfterEvaluateAction(OS, configuration,
                         bootstrapPython, configureCondaRootEnv,
-                        setupPython, setupCondaBuild,
-                        condaBuildCheck, condaBuild));
+                        lockCondaEnvironment, setupPython, installPipPackages, packCondaEnvironment,
+                        verifyCondaEnvironment, setupCondaBuild, condaBuildCheck, condaBuild,
+                        pruneEnvironmentCache));
     }
 
     private static void createIvyRepository(Project project) {
@@ -19,6 +19,7 @@ package com.palantir.python.miniconda;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import org.gradle.internal.os.OperatingSystem;
 
 public final class MinicondaUtils {
 
@@ -31,5 +32,23 @@ public final class MinicondaUtils {
         return Collections.unmodifiableList(args);
     }
 
+    /**
+     * Returns the conda channel subdirectory for packages of the current platform, e.g. {@code linux-64}.
+     */
+    public static String getPlatformSubdir() {
+        OperatingSystem os = OperatingSystem.current();
+        String platform;
+        if (os.isWindows()) {
+            platform = "win";
+        } else if (os.isMacOsX()) {
+            platform = "osx";
+        } else {
+            platform = "linux";
+        }
+        String arch = System.getProperty("os.arch");
+        boolean is64Bit = arch.contains("64") || (os.isWindows() && System.getenv("ProgramFiles(x86)") != null);
+        return platform + (is64Bit ? "-64" : "-32");
+    }
+
     private MinicondaUtils() {}
 }
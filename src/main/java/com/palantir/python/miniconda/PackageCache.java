@@ -0,0 +1,310 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A conda package directory ({@code pkgs_dirs}) shared by all bootstrap installs on a machine, so that packages are
+ * downloaded and extracted once regardless of how many Python and Miniconda versions use them.
+ *
+ * <p>Conda does not coordinate concurrent installs into one package directory, so builds hold {@link #lock()} while
+ * conda may fetch packages. Identical files of different packages, e.g. of consecutive releases, are hard linked to a
+ * single copy once the packages are extracted; conda never modifies extracted files in place, so this is invisible to
+ * it. Packages are evicted least recently used first, where use means being linked into an environment the plugin set
+ * up, tracked in {@code .last-used}. Packages that are still being extracted are neither deduplicated nor evicted.
+ *
+ * @author agent
+ */
+public final class PackageCache {
+    private static final Logger LOG = LoggerFactory.getLogger(PackageCache.class);
+
+    private static final String LOCK_FILE = ".lock";
+    private static final String INDEX_FILE = ".dedup-index";
+    private static final String LAST_USED_DIRECTORY = ".last-used";
+    private static final String CONDA_META_DIRECTORY = "conda-meta";
+    private static final String METADATA_SUFFIX = ".json";
+    private static final String PACKAGE_SUFFIX = ".tar.bz2";
+    private static final String EXTRACTION_RECORD = "info/repodata_record.json";
+    private static final String PACKAGE_FILES = "info/files";
+    private static final String URLS_FILE = "urls.txt";
+    private static final String DEDUPLICATING_SUFFIX = ".dedup";
+    private static final String PACKAGE_ENTRY = "package ";
+    private static final String FILE_ENTRY = "file ";
+    private static final long MIN_DEDUPLICATED_SIZE = 4096L;
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    private final File root;
+
+    public PackageCache(File root) {
+        this.root = Objects.requireNonNull(root, "root must not be null");
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Blocks until this build is the only one changing the cache.
+     */
+    public CrossProcessLock lock() throws IOException {
+        return CrossProcessLock.acquire(new File(root, LOCK_FILE));
+    }
+
+    /**
+     * Records that the packages linked into the conda environment at {@code prefix} were just used.
+     *
+     * @return the packages of the environment
+     */
+    public Set<String> touch(File prefix) throws IOException {
+        Set<String> distributions = new TreeSet<>();
+        File[] metadataFiles = new File(prefix, CONDA_META_DIRECTORY).listFiles();
+        if (metadataFiles == null) {
+            return distributions;
+        }
+        Path lastUsed = new File(root, LAST_USED_DIRECTORY).toPath();
+        Files.createDirectories(lastUsed);
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        for (File metadata : metadataFiles) {
+            String name = metadata.getName();
+            if (!name.endsWith(METADATA_SUFFIX)) {
+                continue;
+            }
+            String distribution = name.substring(0, name.length() - METADATA_SUFFIX.length());
+            distributions.add(distribution);
+            Path marker = lastUsed.resolve(distribution);
+            if (!Files.exists(marker)) {
+                Files.createFile(marker);
+            }
+            Files.setLastModifiedTime(marker, now);
+        }
+        return distributions;
+    }
+
+    /**
+     * Hard links files of packages extracted since the last call to identical files of other packages, comparing
+     * files by size and SHA-256. Small files are left alone, as are files whose permissions differ.
+     *
+     * @return the number of bytes freed
+     */
+    public long deduplicate() throws IOException {
+        final Set<String> indexedPackages = new TreeSet<>();
+        final Map<String, Path> filesByContent = new TreeMap<>();
+        readIndex(indexedPackages, filesByContent);
+
+        long freed = 0L;
+        for (File packageDirectory : listPackageDirectories()) {
+            if (indexedPackages.contains(packageDirectory.getName())) {
+                continue;
+            }
+            freed += deduplicate(packageDirectory.toPath(), filesByContent);
+            indexedPackages.add(packageDirectory.getName());
+        }
+        writeIndex(indexedPackages, filesByContent);
+        if (freed > 0) {
+            LOG.info("Deduplicated {} bytes in conda package cache {}", freed, root);
+        }
+        return freed;
+    }
+
+    private long deduplicate(Path packageDirectory, final Map<String, Path> filesByContent) throws IOException {
+        final long[] freed = {0L};
+        final Path rootPath = root.toPath();
+        Files.walkFileTree(packageDirectory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isRegularFile() || attrs.size() < MIN_DEDUPLICATED_SIZE) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String content = attrs.size() + " " + Hashes.sha256(file);
+                Path original = filesByContent.get(content);
+                Path originalFile = original == null ? null : rootPath.resolve(original);
+                if (originalFile == null || !Files.isRegularFile(originalFile)) {
+                    filesByContent.put(content, rootPath.relativize(file));
+                    return FileVisitResult.CONTINUE;
+                }
+                if (Files.isSameFile(originalFile, file)
+                        || Files.isExecutable(originalFile) != Files.isExecutable(file)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path link = file.resolveSibling(file.getFileName() + DEDUPLICATING_SUFFIX);
+                Files.deleteIfExists(link);
+                Files.createLink(link, originalFile);
+                Files.move(link, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                freed[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return freed[0];
+    }
+
+    private void readIndex(Set<String> indexedPackages, Map<String, Path> filesByContent) throws IOException {
+        Path index = new File(root, INDEX_FILE).toPath();
+        if (!Files.isRegularFile(index)) {
+            return;
+        }
+        for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+            if (line.startsWith(PACKAGE_ENTRY)) {
+                String distribution = line.substring(PACKAGE_ENTRY.length());
+                // evicted packages are indexed again if they are ever extracted again
+                if (new File(root, distribution).isDirectory()) {
+                    indexedPackages.add(distribution);
+                }
+            } else if (line.startsWith(FILE_ENTRY)) {
+                String[] parts = line.substring(FILE_ENTRY.length()).split(" ", 3);
+                if (parts.length == 3 && new File(root, parts[2]).isFile()) {
+                    filesByContent.put(parts[0] + " " + parts[1], Paths.get(parts[2]));
+                }
+            }
+        }
+    }
+
+    private void writeIndex(Set<String> indexedPackages, Map<String, Path> filesByContent) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String distribution : indexedPackages) {
+            lines.add(PACKAGE_ENTRY + distribution);
+        }
+        for (Map.Entry<String, Path> file : filesByContent.entrySet()) {
+            lines.add(FILE_ENTRY + file.getKey() + " " + file.getValue().toString().replace(File.separatorChar, '/'));
+        }
+        Path index = new File(root, INDEX_FILE).toPath();
+        Path temporary = new File(root, INDEX_FILE + ".tmp").toPath();
+        Files.write(temporary, lines, StandardCharsets.UTF_8);
+        Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Evicts least recently used packages, both their tarball and extracted directory, until the cache is within
+     * {@code maxSizeMb} megabytes. A non-positive limit is treated as unbounded and packages in {@code keep} are never
+     * evicted. Files hard linked into environments stay in place there.
+     *
+     * @return the number of evicted packages
+     */
+    public int prune(long maxSizeMb, Set<String> keep) throws IOException {
+        if (maxSizeMb <= 0) {
+            return 0;
+        }
+        final Path lastUsed = new File(root, LAST_USED_DIRECTORY).toPath();
+        List<Entry> entries = new ArrayList<>();
+        for (File packageDirectory : listPackageDirectories()) {
+            String distribution = packageDirectory.getName();
+            File tarball = new File(root, distribution + PACKAGE_SUFFIX);
+            Path marker = lastUsed.resolve(distribution);
+            long used = Files.getLastModifiedTime(Files.exists(marker) ? marker : packageDirectory.toPath()).toMillis();
+            long size = FileTreeUtils.sizeOf(packageDirectory.toPath()) + tarball.length();
+            entries.add(new Entry(distribution, size, used));
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry left, Entry right) {
+                return Long.compare(right.lastUsed, left.lastUsed);
+            }
+        });
+
+        long maxSizeBytes = maxSizeMb * BYTES_PER_MEGABYTE;
+        long remainingBytes = 0L;
+        int evicted = 0;
+        for (Entry entry : entries) {
+            if (keep.contains(entry.distribution) || remainingBytes + entry.size <= maxSizeBytes) {
+                remainingBytes += entry.size;
+                continue;
+            }
+            LOG.info("Evicting conda package {} from {}", entry.distribution, root);
+            Files.deleteIfExists(new File(root, entry.distribution + PACKAGE_SUFFIX).toPath());
+            Files.deleteIfExists(lastUsed.resolve(entry.distribution));
+            Trash.discard(new File(root, entry.distribution).toPath());
+            evicted++;
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns the completely extracted packages, which excludes conda's own {@code cache} directory and the plugin's
+     * bookkeeping. Conda 4.3 and later extract in place and write {@code info/repodata_record.json} last; earlier
+     * versions extract into a temporary directory renamed into place once done, after recording the download in
+     * {@code urls.txt}.
+     */
+    private List<File> listPackageDirectories() throws IOException {
+        List<File> packageDirectories = new ArrayList<>();
+        File[] children = root.listFiles();
+        if (children == null) {
+            return packageDirectories;
+        }
+        Set<String> downloaded = readDownloadedPackages();
+        for (File child : children) {
+            if (child.getName().startsWith(".")) {
+                continue;
+            }
+            if (new File(child, EXTRACTION_RECORD).isFile()
+                    || new File(child, PACKAGE_FILES).isFile() && downloaded.contains(child.getName())) {
+                packageDirectories.add(child);
+            } else if (new File(child, "info").isDirectory()) {
+                LOG.debug("Skipping conda package {} in {}, which is not completely extracted", child.getName(), root);
+            }
+        }
+        Collections.sort(packageDirectories);
+        return packageDirectories;
+    }
+
+    private Set<String> readDownloadedPackages() throws IOException {
+        Set<String> downloaded = new TreeSet<>();
+        Path urls = new File(root, URLS_FILE).toPath();
+        if (!Files.isRegularFile(urls)) {
+            return downloaded;
+        }
+        for (String url : Files.readAllLines(urls, StandardCharsets.UTF_8)) {
+            String name = url.trim().substring(url.trim().lastIndexOf('/') + 1);
+            if (name.endsWith(PACKAGE_SUFFIX)) {
+                downloaded.add(name.substring(0, name.length() - PACKAGE_SUFFIX.length()));
+            }
+        }
+        return downloaded;
+    }
+
+    private static final class Entry {
+        private final String distribution;
+        private final long size;
+        private final long lastUsed;
+
+        Entry(String distribution, long size, long lastUsed) {
+            this.distribution = distribution;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
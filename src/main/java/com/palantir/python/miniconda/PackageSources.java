@@ -0,0 +1,156 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Where conda finds packages and where it keeps the ones it downloads, resolved from a {@link MinicondaExtension} when
+ * tasks are configured so that they do not read the extension while they run.
+ *
+ * @author agent
+ */
+public final class PackageSources {
+    private static final Logger LOG = LoggerFactory.getLogger(PackageSources.class);
+
+    private final List<String> channels;
+    private final ChannelMirror channelMirror;
+    private final boolean offline;
+    private final File packageDirectory;
+    private final PackageCache sharedPackageCache;
+    private final long sharedPackageCacheMaxSizeMb;
+
+    private PackageSources(List<String> channels, ChannelMirror channelMirror, boolean offline,
+            File packageDirectory, PackageCache sharedPackageCache, long sharedPackageCacheMaxSizeMb) {
+        this.channels = channels;
+        this.channelMirror = channelMirror;
+        this.offline = offline;
+        this.packageDirectory = packageDirectory;
+        this.sharedPackageCache = sharedPackageCache;
+        this.sharedPackageCacheMaxSizeMb = sharedPackageCacheMaxSizeMb;
+    }
+
+    public static PackageSources of(MinicondaExtension miniconda) {
+        Objects.requireNonNull(miniconda, "miniconda must not be null");
+        ChannelMirror channelMirror = miniconda.getUseLocalChannelMirror()
+                ? new ChannelMirror(miniconda.getLocalChannelMirrorDirectory(), MinicondaUtils.getPlatformSubdir())
+                : null;
+        if (miniconda.getUseSharedPackageCache()) {
+            File directory = miniconda.getSharedPackageCacheDirectory();
+            return new PackageSources(new ArrayList<>(miniconda.getChannels()), channelMirror, miniconda.getOffline(),
+                    directory, new PackageCache(directory), miniconda.getSharedPackageCacheMaxSizeMb());
+        }
+        return new PackageSources(new ArrayList<>(miniconda.getChannels()), channelMirror, miniconda.getOffline(),
+                new File(miniconda.getBootstrapDirectory(), "pkgs"), null, 0L);
+    }
+
+    /**
+     * Returns the channel arguments for the configured channels, preceded by the local channel mirror when it is
+     * enabled and populated. In offline mode only the mirror is used, so packages missing from it fail to resolve.
+     */
+    public List<String> getChannelArgs() {
+        if (channelMirror == null) {
+            return MinicondaUtils.convertChannelsToArgs(channels);
+        }
+        if (offline) {
+            return MinicondaUtils.convertChannelsToArgs(Collections.singletonList(channelMirror.getUrl()));
+        }
+        List<String> mirroredChannels = new ArrayList<>();
+        if (channelMirror.exists()) {
+            mirroredChannels.add(channelMirror.getUrl());
+        }
+        mirroredChannels.addAll(channels);
+        return MinicondaUtils.convertChannelsToArgs(mirroredChannels);
+    }
+
+    /**
+     * Returns the directory conda downloads and extracts packages into: the shared package cache if it is enabled,
+     * otherwise the {@code pkgs} directory of the bootstrap install.
+     */
+    public File getPackageDirectory() {
+        return packageDirectory;
+    }
+
+    /**
+     * Locks the {@link #getPackageDirectory() package directory} for conda commands that run concurrently, whether or
+     * not it is shared. Returns {@code null} for a read-only directory, e.g. of an install in a read-only bootstrap
+     * prefix, which conda does not extract packages into.
+     */
+    public CrossProcessLock lockPackageDirectory() throws IOException {
+        if (packageDirectory.isDirectory() && !Files.isWritable(packageDirectory.toPath())) {
+            return null;
+        }
+        return new PackageCache(packageDirectory).lock();
+    }
+
+    /**
+     * Returns whether packages are fetched into the package cache shared by all bootstrap installs.
+     */
+    public boolean usesSharedPackageCache() {
+        return sharedPackageCache != null;
+    }
+
+    /**
+     * Locks the shared package cache for a conda command that may fetch packages, returning {@code null} if it is not
+     * enabled, which try-with-resources statements accept.
+     */
+    public CrossProcessLock lockPackageCache() throws IOException {
+        return sharedPackageCache == null ? null : sharedPackageCache.lock();
+    }
+
+    /**
+     * Records the packages of the environment at {@code prefix} as used, deduplicates newly extracted packages and
+     * evicts packages beyond {@code sharedPackageCacheMaxSizeMb}, if the shared package cache is enabled. A cache that
+     * cannot be maintained only costs disk space, so failures are logged rather than thrown.
+     */
+    public void maintainPackageCache(File prefix) {
+        if (sharedPackageCache == null) {
+            return;
+        }
+        try (CrossProcessLock ignored = sharedPackageCache.lock()) {
+            Set<String> used = sharedPackageCache.touch(prefix);
+            sharedPackageCache.deduplicate();
+            sharedPackageCache.prune(sharedPackageCacheMaxSizeMb, used);
+        } catch (IOException e) {
+            LOG.warn("Failed to maintain conda package cache {}", sharedPackageCache.getRoot(), e);
+        }
+    }
+
+    /**
+     * Adds the packages downloaded into the package directory to the local channel mirror, if it is enabled. A mirror
+     * that cannot be updated only costs later builds a download, so failures are logged rather than thrown.
+     */
+    public void updateChannelMirror() {
+        if (channelMirror == null) {
+            return;
+        }
+        try {
+            channelMirror.update(packageDirectory);
+        } catch (IOException e) {
+            LOG.warn("Failed to update local conda channel {}", channelMirror.getRoot(), e);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Streams compressed as a sequence of independently deflated blocks, so that both compression and decompression can
+ * use several threads while the data is still written and read strictly sequentially.
+ *
+ * <p>Each block is framed as its uncompressed length, its compressed length and the deflated bytes; a frame with an
+ * uncompressed length of 0 ends the stream. At most two blocks per thread are held in memory at any time.
+ *
+ * @author agent
+ */
+final class ParallelBlockStreams {
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    static OutputStream compress(OutputStream out, int threads) {
+        return new CompressingOutputStream(new DataOutputStream(out), threads);
+    }
+
+    static InputStream decompress(InputStream in, int threads) {
+        return new DecompressingInputStream(new DataInputStream(in), threads);
+    }
+
+    private static final class Block {
+        private final int length;
+        private final byte[] data;
+
+        Block(int length, byte[] data) {
+            this.length = length;
+            this.data = data;
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a block", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to process a block", e.getCause());
+        }
+    }
+
+    private static final class CompressingOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final int maxPending;
+        private final ExecutorService executor;
+        private final Deque<Future<Block>> pending = new ArrayDeque<>();
+        private byte[] buffer = new byte[BLOCK_SIZE];
+        private int buffered = 0;
+        private boolean closed = false;
+
+        CompressingOutputStream(DataOutputStream out, int threads) {
+            this.out = out;
+            this.maxPending = 2 * Math.max(1, threads);
+            this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            buffer[buffered++] = (byte) b;
+            if (buffered == BLOCK_SIZE) {
+                submitBlock();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int chunk = Math.min(len, BLOCK_SIZE - buffered);
+                System.arraycopy(b, off, buffer, buffered, chunk);
+                buffered += chunk;
+                off += chunk;
+                len -= chunk;
+                if (buffered == BLOCK_SIZE) {
+                    submitBlock();
+                }
+            }
+        }
+
+        private void submitBlock() throws IOException {
+            final byte[] block = buffer;
+            final int length = buffered;
+            buffer = new byte[BLOCK_SIZE];
+            buffered = 0;
+            pending.addLast(executor.submit(new Callable<Block>() {
+                @Override
+                public Block call() {
+                    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                    try {
+                        deflater.setInput(block, 0, length);
+                        deflater.finish();
+                        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+                        byte[] chunk = new byte[64 * 1024];
+                        while (!deflater.finished()) {
+                            int produced = deflater.deflate(chunk);
+                            compressed.write(chunk, 0, produced);
+                        }
+                        return new Block(length, compressed.toByteArray());
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            }));
+            while (pending.size() >= maxPending) {
+                writeBlock(await(pending.removeFirst()));
+            }
+        }
+
+        private void writeBlock(Block block) throws IOException {
+            out.writeInt(block.length);
+            out.writeInt(block.data.length);
+            out.write(block.data);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (buffered > 0) {
+                    submitBlock();
+                }
+                while (!pending.isEmpty()) {
+                    writeBlock(await(pending.removeFirst()));
+                }
+                out.writeInt(0);
+                out.writeInt(0);
+                out.close();
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static final class DecompressingInputStream extends InputStream {
+        private final DataInputStream in;
+        private final int maxPending;
+        private final ExecutorService executor;
+        private final Deque<Future<Block>> pending = new ArrayDeque<>();
+        private boolean endOfFrames = false;
+        private byte[] current = new byte[0];
+        private int position = 0;
+
+        DecompressingInputStream(DataInputStream in, int threads) {
+            this.in = in;
+            this.maxPending = 2 * Math.max(1, threads);
+            this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            int chunk = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, chunk);
+            position += chunk;
+            return chunk;
+        }
+
+        private boolean ensureAvailable() throws IOException {
+            while (position == current.length) {
+                readAhead();
+                if (pending.isEmpty()) {
+                    return false;
+                }
+                current = await(pending.removeFirst()).data;
+                position = 0;
+            }
+            return true;
+        }
+
+        private void readAhead() throws IOException {
+            while (!endOfFrames && pending.size() < maxPending) {
+                final int length = in.readInt();
+                int compressedLength = in.readInt();
+                if (length == 0) {
+                    endOfFrames = true;
+                    return;
+                }
+                if (length < 0 || length > BLOCK_SIZE || compressedLength < 0) {
+                    throw new IOException("Corrupt block header");
+                }
+                final byte[] compressed = new byte[compressedLength];
+                in.readFully(compressed);
+                pending.addLast(executor.submit(new Callable<Block>() {
+                    @Override
+                    public Block call() throws DataFormatException {
+                        Inflater inflater = new Inflater();
+                        try {
+                            inflater.setInput(compressed);
+                            byte[] data = new byte[length];
+                            int inflated = 0;
+                            while (inflated < length && !inflater.finished()) {
+                                int produced = inflater.inflate(data, inflated, length - inflated);
+                                if (produced == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                                    break;
+                                }
+                                inflated += produced;
+                            }
+                            if (inflated != length) {
+                                throw new DataFormatException("Truncated block");
+                            }
+                            return new Block(length, data);
+                        } finally {
+                            inflater.end();
+                        }
+                    }
+                }));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Future<Block> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            executor.shutdownNow();
+            current = new byte[0];
+            position = 0;
+            in.close();
+        }
+    }
+
+    private ParallelBlockStreams() {}
+}
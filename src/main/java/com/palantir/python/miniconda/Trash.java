@@ -0,0 +1,174 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes large directory trees such as conda environments without blocking the build: a tree is renamed into a trash
+ * directory next to it, which is instant on the same file system, and deleted on a pool of background threads.
+ *
+ * <p>The pool's threads do not keep the JVM alive, so trees that were not fully deleted when the build process exits
+ * stay in the trash until {@link #sweep(Path)} is called for their parent directory in a later build.
+ *
+ * @author agent
+ */
+public final class Trash {
+    private static final Logger LOG = LoggerFactory.getLogger(Trash.class);
+
+    private static final String TRASH_DIRECTORY = ".miniconda-trash";
+    private static final ForkJoinPool DELETERS = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private static final Set<Path> DELETING = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+    /**
+     * Moves {@code root} out of the way and deletes it in the background, along with trees an earlier build left in
+     * the same trash. If it cannot be moved, e.g. because it is a mount point, it is deleted before this method
+     * returns.
+     *
+     * @return the background deletion, which is already done if {@code root} did not exist or could not be moved
+     */
+    public static Future<?> discard(Path path) throws IOException {
+        Path root = path.toAbsolutePath();
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+            return done();
+        }
+        sweep(root.getParent());
+        Path trash = getTrashDirectory(root.getParent());
+        Path target = trash.resolve(root.getFileName() + "-" + UUID.randomUUID());
+        try {
+            Files.createDirectories(trash);
+            Files.move(root, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.debug("Cannot move {} to the trash, deleting it in place", root, e);
+            FileTreeUtils.deleteRecursively(root);
+            return done();
+        }
+        LOG.debug("Moved {} to {}", root, target);
+        return delete(target);
+    }
+
+    /**
+     * Starts deleting the trees left in the trash next to the children of {@code parent} by earlier builds.
+     */
+    public static void sweep(Path parent) {
+        Path trash = getTrashDirectory(parent);
+        if (!Files.isDirectory(trash)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(trash)) {
+            for (Path entry : entries) {
+                delete(entry);
+            }
+        } catch (IOException e) {
+            LOG.debug("Failed to list trash {}", trash, e);
+        }
+    }
+
+    private static Future<?> done() {
+        FutureTask<Void> done = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {}
+        }, null);
+        done.run();
+        return done;
+    }
+
+    private static Path getTrashDirectory(Path parent) {
+        return parent.resolve(TRASH_DIRECTORY);
+    }
+
+    private static Future<?> delete(final Path tree) {
+        if (!DELETING.add(tree)) {
+            return done();
+        }
+        return DELETERS.submit(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                try {
+                    if (Files.isDirectory(tree, LinkOption.NOFOLLOW_LINKS)) {
+                        new DeleteTree(tree).compute();
+                    } else {
+                        deleteQuietly(tree);
+                    }
+                } finally {
+                    DELETING.remove(tree);
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes a directory tree without following symbolic links, forking one task per subdirectory. Failures are only
+     * logged, leaving whatever could not be deleted for the next sweep.
+     */
+    private static final class DeleteTree extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+
+        DeleteTree(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            List<DeleteTree> subtrees = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        subtrees.add(new DeleteTree(entry));
+                    } else {
+                        deleteQuietly(entry);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.debug("Failed to list {}", directory, e);
+            }
+            invokeAll(subtrees);
+            deleteQuietly(directory);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.debug("Failed to delete {}", path, e);
+        }
+    }
+
+    private Trash() {}
+}
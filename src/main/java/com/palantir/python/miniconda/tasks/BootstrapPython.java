@@ -16,15 +16,27 @@
 
 package com.palantir.python.miniconda.tasks;
 
+import com.palantir.python.miniconda.CondaTimings;
+import com.palantir.python.miniconda.CrossProcessLock;
+import com.palantir.python.miniconda.EnvironmentManifest;
+import com.palantir.python.miniconda.InstallerDownloader;
+import com.palantir.python.miniconda.InstallerExtractor;
 import com.palantir.python.miniconda.MinicondaExtension;
+import com.palantir.python.miniconda.Trash;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Objects;
-import org.gradle.api.Action;
+import org.gradle.api.GradleException;
 import org.gradle.api.Task;
+import org.gradle.api.file.FileCollection;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.AbstractExecTask;
+import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskContainer;
 import org.gradle.internal.os.OperatingSystem;
+import org.gradle.process.internal.ExecAction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +51,10 @@ public class BootstrapPython extends AbstractExecTask<BootstrapPython> {
 
     private static final String DEFAULT_GROUP = "build";
     private static final String DEFAULT_DESCRIPTION = "Installs a conda env with specified packages.";
+    private static final String INSTALLED_MARKER = ".miniconda-installed";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final String STAGING_SUFFIX = ".staging";
+    private static final String SCRIPT_SUFFIX = ".install.sh";
 
     public static BootstrapPython createTask(TaskContainer tasks) {
         Objects.requireNonNull(tasks, "tasks must not be null");
@@ -50,44 +66,198 @@ public class BootstrapPython extends AbstractExecTask<BootstrapPython> {
         return task;
     }
 
+    private File writableBootstrapDirectory;
+    private boolean parallelInstallerExtraction;
+    private CondaTimings timings;
+    private InstallerDownloader installerDownloader;
+    private FileCollection condaInstaller;
+    private OperatingSystem os;
+
     public BootstrapPython() {
         super(BootstrapPython.class);
     }
 
+    /**
+     * Returns whether {@code bootstrapDirectory} holds a complete Miniconda install.
+     */
+    public static boolean isInstalled(File bootstrapDirectory) {
+        return new File(bootstrapDirectory, INSTALLED_MARKER).isFile();
+    }
+
+    /**
+     * Configures the task to run the installer fetched by {@code downloader}, which is only downloaded once the task
+     * actually needs to install Miniconda.
+     */
     public void configureAfterEvaluate(
-            final MinicondaExtension miniconda, File condaInstaller, OperatingSystem os) {
-        Objects.requireNonNull(miniconda, "miniconda must not be null");
+            MinicondaExtension minicondaExtension, InstallerDownloader downloader, OperatingSystem os) {
+        this.installerDownloader = Objects.requireNonNull(downloader, "downloader must not be null");
+        configureAfterEvaluate(minicondaExtension, getProject().files(downloader.getDestination()), os);
+    }
+
+    public void configureAfterEvaluate(MinicondaExtension minicondaExtension, File condaInstaller, OperatingSystem os) {
         Objects.requireNonNull(condaInstaller, "condaInstaller must not be null");
-        Objects.requireNonNull(os, "os must not be null");
+        configureAfterEvaluate(minicondaExtension, getProject().files(condaInstaller), os);
+    }
 
-        getInputs().property("version", miniconda.getMinicondaVersion());
-        getInputs().property("directory", miniconda.getBootstrapDirectoryPrefix());
-        getOutputs().dir(miniconda.getBootstrapDirectory());
+    /**
+     * Configures the task to run the single file of {@code condaInstaller}. The collection is only resolved when the
+     * task executes, so builds that do not install Miniconda never resolve the installer dependency.
+     */
+    public void configureAfterEvaluate(
+            final MinicondaExtension minicondaExtension, FileCollection condaInstaller, OperatingSystem os) {
+        Objects.requireNonNull(minicondaExtension, "miniconda must not be null");
+        this.condaInstaller = Objects.requireNonNull(condaInstaller, "condaInstaller must not be null");
+        this.os = Objects.requireNonNull(os, "os must not be null");
 
-        if (os.isWindows()) {
-            executable(condaInstaller);
-        } else {
-            executable("bash");
-            args(condaInstaller);
-        }
-        args("-b", "-p", miniconda.getBootstrapDirectory());
-        doFirst(new Action<Task>() {
-            @Override
-            public void execute(Task task) {
-                if (!miniconda.getBootstrapDirectoryPrefix().mkdirs()) {
-                    getProject().delete(miniconda.getBootstrapDirectory());
-                    LOG.debug("Deleted BootstrapPython dir: {}", miniconda.getBootstrapDirectory());
-                }
-            }
-        });
+        this.writableBootstrapDirectory = minicondaExtension.getWritableBootstrapDirectory();
+        this.parallelInstallerExtraction = minicondaExtension.getParallelInstallerExtraction();
+        this.timings = minicondaExtension.getTimings();
+
+        getInputs().property("version", minicondaExtension.getMinicondaVersion());
+        getInputs().property("directory", minicondaExtension.getBootstrapDirectoryPrefix());
+        getOutputs().dir(writableBootstrapDirectory);
+
+        // a verified install in a read-only bootstrap prefix counts as installed
+        final File resolvedBootstrapDirectory = minicondaExtension.getBootstrapDirectory();
         onlyIf(new Spec<Task>() {
             @Override
             public boolean isSatisfiedBy(Task task) {
-                boolean directoryDoesNotExist = !miniconda.getBootstrapDirectory().exists();
-                LOG.debug("BootstrapPython directory exists: {}", !directoryDoesNotExist);
-                return directoryDoesNotExist;
+                boolean installed = isInstalled(resolvedBootstrapDirectory);
+                LOG.debug("BootstrapPython directory installed: {}", installed);
+                return !installed;
             }
         });
-        LOG.info("{} configured to execute {}", getName(), getCommandLine());
+    }
+
+    /**
+     * Installs Miniconda while holding a lock next to the bootstrap directory, so concurrent builds on the same host
+     * wait for a single install instead of racing on it. The installer embeds its prefix into the installed files, so
+     * it cannot run in a temporary directory and be renamed into place; the completion marker written last serves the
+     * same purpose, as any directory without it is a leftover from an interrupted install and is removed first.
+     */
+    @Override
+    @TaskAction
+    protected void exec() {
+        File bootstrapDirectory = writableBootstrapDirectory;
+        File lockFile = new File(bootstrapDirectory.getParentFile(), bootstrapDirectory.getName() + LOCK_SUFFIX);
+        try (CrossProcessLock ignored = CrossProcessLock.acquire(lockFile)) {
+            if (isInstalled(bootstrapDirectory)) {
+                LOG.info("Miniconda was installed to {} by another build", bootstrapDirectory);
+                return;
+            }
+            if (isWorkingInstall(bootstrapDirectory)) {
+                LOG.info("Adopting Miniconda install in {} made before completion markers were written",
+                        bootstrapDirectory);
+                markInstalled(bootstrapDirectory);
+                return;
+            }
+            if (bootstrapDirectory.exists()) {
+                Trash.discard(bootstrapDirectory.toPath());
+                LOG.debug("Deleted incomplete BootstrapPython dir: {}", bootstrapDirectory);
+            }
+            if (installerDownloader != null) {
+                try (CondaTimings.Phase timing = timings.start(getPath(), "download")) {
+                    installerDownloader.download();
+                }
+            }
+            File installer = condaInstaller.getSingleFile();
+            if (parallelInstallerExtraction && !os.isWindows()
+                    && installExtracted(installer, bootstrapDirectory)) {
+                markInstalled(bootstrapDirectory);
+                return;
+            }
+            if (os.isWindows()) {
+                executable(installer);
+            } else {
+                executable("bash");
+                args(installer);
+            }
+            args("-b", "-p", bootstrapDirectory);
+            LOG.info("{} executing {}", getName(), getCommandLine());
+            try (CondaTimings.Phase timing = timings.start(getPath(), "extract")) {
+                super.exec();
+            }
+            markInstalled(bootstrapDirectory);
+        } catch (IOException e) {
+            throw new GradleException("Failed to install Miniconda to " + bootstrapDirectory, e);
+        }
+    }
+
+    /**
+     * Returns whether {@code bootstrapDirectory} holds an install without a completion marker, as made by earlier
+     * versions of the plugin, whose conda still runs. Installs interrupted before conda was linked fail this check.
+     */
+    private boolean isWorkingInstall(File bootstrapDirectory) {
+        File conda = new File(bootstrapDirectory, os.isWindows() ? "Scripts/conda.exe" : "bin/conda");
+        if (!conda.isFile()) {
+            return false;
+        }
+        ExecAction execAction = getExecActionFactory().newExecAction();
+        execAction.executable(conda);
+        execAction.args("--version");
+        execAction.setIgnoreExitValue(true);
+        execAction.setStandardOutput(new OutputTail());
+        execAction.setErrorOutput(new OutputTail());
+        return execAction.execute().getExitValue() == 0;
+    }
+
+    /**
+     * Writes the manifest other builds verify before using this install from a read-only bootstrap prefix, followed
+     * by the completion marker.
+     */
+    private static void markInstalled(File bootstrapDirectory) throws IOException {
+        EnvironmentManifest.write(bootstrapDirectory.toPath(), Runtime.getRuntime().availableProcessors());
+        Files.write(new File(bootstrapDirectory, INSTALLED_MARKER).toPath(), new byte[0]);
+    }
+
+    /**
+     * Installs Miniconda by extracting the installer's packages in parallel from Java and only running its linking
+     * step. Returns {@code false} if the installer is not supported, cannot be extracted or its rewritten header
+     * fails, in which case {@code bootstrapDirectory} does not exist and the installer has to be run as is.
+     */
+    private boolean installExtracted(File installer, File bootstrapDirectory) throws IOException {
+        InstallerExtractor extractor = InstallerExtractor.read(installer);
+        if (extractor == null) {
+            return false;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        File parent = bootstrapDirectory.getParentFile();
+        File staging = new File(parent, "." + bootstrapDirectory.getName() + STAGING_SUFFIX);
+        File script = new File(parent, "." + bootstrapDirectory.getName() + SCRIPT_SUFFIX);
+        try {
+            try {
+                Trash.discard(staging.toPath());
+                try (CondaTimings.Phase timing = timings.start(getPath(), "extract")) {
+                    extractor.extractPayload(staging, threads);
+                }
+                if (!extractor.writeInstallScript(staging, script)) {
+                    return false;
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to extract {}, running the installer instead", installer, e);
+                return false;
+            }
+
+            executable("bash");
+            args(script, "-b", "-p", bootstrapDirectory);
+            LOG.info("{} executing {}", getName(), getCommandLine());
+            try (CondaTimings.Phase timing = timings.start(getPath(), "link")) {
+                super.exec();
+            } catch (GradleException e) {
+                LOG.warn("Failed to install from the extracted {}, running the installer instead", installer, e);
+                setArgs(new ArrayList<String>());
+                Trash.discard(bootstrapDirectory.toPath());
+                return false;
+            }
+            if (extractor.compilesBytecode()) {
+                try (CondaTimings.Phase timing = timings.start(getPath(), "compile")) {
+                    InstallerExtractor.compileBytecode(bootstrapDirectory, threads);
+                }
+            }
+            return true;
+        } finally {
+            Trash.discard(staging.toPath());
+            Files.deleteIfExists(script.toPath());
+        }
     }
 }
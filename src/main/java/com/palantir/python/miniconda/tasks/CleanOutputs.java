@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import com.palantir.python.miniconda.Trash;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.Delete;
+import org.gradle.api.tasks.TaskAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletes the outputs of another task. Directories are moved to the {@link Trash} and deleted in the background, so
+ * cleaning multi-gigabyte conda installs does not hold up the build. It is configured like any other {@link Delete}
+ * task, except that symbolic links are never followed.
+ *
+ * @author agent
+ */
+@SuppressWarnings("checkstyle:DesignForExtension") // tasks need non-final getters
+public class CleanOutputs extends Delete {
+    private static final Logger LOG = LoggerFactory.getLogger(CleanOutputs.class);
+
+    @Override
+    @TaskAction
+    protected void clean() {
+        boolean didWork = false;
+        for (File target : getTargetFiles()) {
+            Path path = target.toPath();
+            if (Files.exists(path, LinkOption.NOFOLLOW_LINKS) && !Files.isWritable(path.getParent())) {
+                // e.g. the .condarc of a Miniconda install in a read-only bootstrap prefix
+                LOG.info("Not deleting {} from a read-only directory", target);
+                continue;
+            }
+            try {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    Trash.discard(path);
+                    didWork = true;
+                } else {
+                    didWork |= Files.deleteIfExists(path);
+                }
+            } catch (IOException e) {
+                throw new GradleException("Failed to delete " + target, e);
+            }
+        }
+        setDidWork(didWork);
+    }
+}
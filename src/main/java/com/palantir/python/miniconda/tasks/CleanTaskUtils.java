@@ -29,7 +29,7 @@ public final class CleanTaskUtils {
 
     public static Delete createCleanupTask(TaskContainer tasks, Task task) {
         String cleanTaskName = getCleanTaskName(task);
-        Delete clean = tasks.create(cleanTaskName, Delete.class);
+        CleanOutputs clean = tasks.create(cleanTaskName, CleanOutputs.class);
         clean.setGroup(task.getGroup());
         clean.setDescription("Cleans for " + task.getName());
         clean.delete(task.getOutputs().getFiles());
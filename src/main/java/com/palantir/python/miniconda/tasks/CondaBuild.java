@@ -16,11 +16,32 @@
 
 package com.palantir.python.miniconda.tasks;
 
+import com.palantir.python.miniconda.CondaRecipe;
+import com.palantir.python.miniconda.CondaTimings;
+import com.palantir.python.miniconda.CrossProcessLock;
 import com.palantir.python.miniconda.MinicondaExtension;
 import com.palantir.python.miniconda.MinicondaUtils;
+import com.palantir.python.miniconda.PackageSources;
+import com.palantir.python.miniconda.Trash;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import javax.inject.Inject;
+import org.gradle.api.GradleException;
 import org.gradle.api.tasks.AbstractExecTask;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskContainer;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+import org.gradle.process.internal.ExecAction;
+import org.gradle.process.internal.ExecException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +50,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author jakobjuelich
  */
+@CacheableTask
 @SuppressWarnings("checkstyle:DesignForExtension") // tasks need non-final getters
 public class CondaBuild extends AbstractExecTask<CondaBuild> {
     private static final Logger LOG = LoggerFactory.getLogger(CondaBuild.class);
@@ -49,6 +71,12 @@ public class CondaBuild extends AbstractExecTask<CondaBuild> {
         return task;
     }
 
+    private List<File> recipes;
+    private File buildOutputDirectory;
+    private int parallelism;
+    private PackageSources packageSources;
+    private CondaTimings timings;
+
     public CondaBuild() {
         super(CondaBuild.class);
     }
@@ -56,16 +84,162 @@ public class CondaBuild extends AbstractExecTask<CondaBuild> {
     public void configureAfterEvaluate(final MinicondaExtension miniconda) {
         Objects.requireNonNull(miniconda, "miniconda must not be null");
 
+        recipes = new ArrayList<>();
+        for (Path recipe : miniconda.getRecipes()) {
+            recipes.add(recipe.toFile());
+        }
+        buildOutputDirectory = miniconda.getBuildOutputDirectory();
+        parallelism = miniconda.getMaxParallelCondaBuilds() > 0
+                ? miniconda.getMaxParallelCondaBuilds()
+                : getProject().getGradle().getStartParameter().getMaxWorkerCount();
+        packageSources = PackageSources.of(miniconda);
+        timings = miniconda.getTimings();
+
         executable(miniconda.getBootstrapDirectory().toPath().resolve("bin/conda"));
-        args("build", miniconda.getMetaYaml());
-        args("--override-channels");
-        args("--no-anaconda-upload");
-        args(MinicondaUtils.convertChannelsToArgs(miniconda.getChannels()));
-        if (miniconda.getBuildOutputDirectory() != null) {
-            args("--output-folder", miniconda.getBuildOutputDirectory().getAbsolutePath());
+        args(createArgs(recipes.get(0), false));
+
+        CondaRecipeInputs.configure(this, miniconda);
+        if (buildOutputDirectory != null) {
+            // without an output folder packages land in the shared bootstrap conda-bld directory, so always rebuild
+            getOutputs().dir(buildOutputDirectory).withPropertyName("packages");
         }
 
         LOG.info("{} configured to execute {}", getName(), getCommandLine());
     }
 
+    /**
+     * Builds a single recipe with the configured command line, or several recipes in dependency order. With a
+     * {@code buildOutputDirectory} independent recipes build concurrently, each in its own conda-build root so that
+     * their work directories do not collide, and later recipes resolve earlier ones from the output directory.
+     * Without it packages land in the bootstrap install's {@code conda-bld}, which is also the local channel later
+     * recipes resolve earlier ones from, so recipes are built one at a time there. With the shared package cache,
+     * each recipe's requirements are {@link #prefetchRequirements fetched} while holding its lock before the build.
+     */
+    @Override
+    @TaskAction
+    protected void exec() {
+        if (recipes.size() == 1) {
+            prefetchRequirements(CondaRecipe.parse(recipes.get(0)), Collections.<String>emptySet(), 0);
+            String recipeName = getRecipeName(recipes.get(0));
+            CondaOutputPhases output = CondaOutputPhases
+                    .forBuild(timings, getPath(), recipeName, System.out)
+                    .withProgress(getProgressLoggerFactory(), "conda build " + recipeName);
+            setStandardOutput(output);
+            try {
+                super.exec();
+            } finally {
+                output.finish();
+            }
+            return;
+        }
+
+        List<CondaRecipe> parsedRecipes = new ArrayList<>();
+        for (File recipe : recipes) {
+            parsedRecipes.add(CondaRecipe.parse(recipe));
+        }
+        final Set<String> builtPackages = new HashSet<>();
+        for (CondaRecipe recipe : parsedRecipes) {
+            builtPackages.add(recipe.getPackageName());
+        }
+        final CondaBuildScheduler scheduler = new CondaBuildScheduler(parsedRecipes);
+        final boolean separateRoots = buildOutputDirectory != null;
+        int concurrentBuilds = separateRoots ? parallelism : 1;
+        LOG.info("Building {} conda recipes using up to {} concurrent builds", parsedRecipes.size(), concurrentBuilds);
+
+        scheduler.buildAll(concurrentBuilds, new CondaBuildScheduler.RecipeBuild() {
+            @Override
+            public void build(CondaRecipe recipe, int index) {
+                prefetchRequirements(recipe, builtPackages, index);
+                ExecAction execAction = getExecActionFactory().newExecAction();
+                execAction.executable(getExecutable());
+                execAction.args(createArgs(recipe.getDirectory(), !scheduler.getDependencies(index).isEmpty()));
+                if (separateRoots) {
+                    execAction.args("--croot", new File(getTemporaryDir(), "croot-" + index).getAbsolutePath());
+                }
+                String recipeName = getRecipeName(recipe.getDirectory());
+                CondaOutputPhases output = CondaOutputPhases
+                        .forBuild(timings, getPath(), recipeName, System.out)
+                        .withProgress(getProgressLoggerFactory(), "conda build " + recipeName);
+                execAction.setStandardOutput(output);
+                try {
+                    execAction.execute();
+                } catch (ExecException e) {
+                    // the console interleaves the output of concurrent builds, so repeat the end of this one
+                    throw new GradleException(
+                            "conda build of " + recipeName + " failed, last output:\n" + output.getTail(), e);
+                } finally {
+                    output.finish();
+                }
+            }
+        });
+    }
+
+    /**
+     * Fetches the requirements of {@code recipe} into the shared package cache, if it is enabled, by creating a
+     * throwaway environment of them while holding the cache's lock. The bundled conda cannot fetch packages without
+     * linking them, and conda-build fetches the packages of its build and test environments itself, so this is what
+     * lets builds run without the lock and concurrently. Requirements are only known by name and conda-build resolves
+     * their versions itself, so this is best effort: packages it resolves differently, or requirements the recipe
+     * templates, are fetched by conda-build without the lock, and a failed prefetch is logged rather than thrown.
+     * Packages of recipes built by this task are skipped, as they are not in the channels yet.
+     */
+    private void prefetchRequirements(CondaRecipe recipe, Set<String> builtPackages, int index) {
+        if (!packageSources.usesSharedPackageCache()) {
+            return;
+        }
+        List<String> requirements = new ArrayList<>(recipe.getRequirements());
+        requirements.removeAll(builtPackages);
+        if (requirements.isEmpty()) {
+            return;
+        }
+
+        File prefix = new File(getTemporaryDir(), "prefetch-" + index);
+        ExecAction execAction = getExecActionFactory().newExecAction();
+        execAction.executable(getExecutable());
+        execAction.args("create", "--yes", "--quiet", "--prefix", prefix.getAbsolutePath(), "--override-channels");
+        execAction.args(packageSources.getChannelArgs());
+        execAction.args(requirements);
+        execAction.setIgnoreExitValue(true);
+        OutputTail output = new OutputTail();
+        execAction.setStandardOutput(output);
+        execAction.setErrorOutput(output);
+        try {
+            try (CrossProcessLock ignored = packageSources.lockPackageCache()) {
+                if (execAction.execute().getExitValue() != 0) {
+                    LOG.warn("Failed to fetch the requirements of {} into the shared package cache, conda-build"
+                            + " fetches them itself:\n{}", getRecipeName(recipe.getDirectory()), output);
+                }
+            }
+            // marks the fetched packages as used, so that other builds keep them in the cache meanwhile
+            packageSources.maintainPackageCache(prefix);
+            Trash.discard(prefix.toPath());
+        } catch (IOException e) {
+            throw new GradleException("Failed to lock conda package cache", e);
+        }
+    }
+
+    @Inject
+    protected ProgressLoggerFactory getProgressLoggerFactory() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static String getRecipeName(File recipe) {
+        return recipe.isFile() ? recipe.getParentFile().getName() : recipe.getName();
+    }
+
+    private List<Object> createArgs(File recipe, boolean useBuiltPackages) {
+        List<Object> args = new ArrayList<>();
+        args.addAll(Arrays.asList("build", recipe, "--override-channels", "--no-anaconda-upload"));
+        if (useBuiltPackages && buildOutputDirectory != null) {
+            // recipes depending on other recipes resolve them from the packages built earlier in this task
+            args.addAll(MinicondaUtils.convertChannelsToArgs(
+                    Collections.singletonList(buildOutputDirectory.toURI().toString())));
+        }
+        args.addAll(packageSources.getChannelArgs());
+        if (buildOutputDirectory != null) {
+            args.add("--output-folder");
+            args.add(buildOutputDirectory.getAbsolutePath());
+        }
+        return args;
+    }
 }
@@ -17,8 +17,16 @@
 package com.palantir.python.miniconda.tasks;
 
 import com.palantir.python.miniconda.MinicondaExtension;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Objects;
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.Task;
 import org.gradle.api.tasks.AbstractExecTask;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskContainer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +36,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author jakobjuelich
  */
+@CacheableTask
 @SuppressWarnings("checkstyle:DesignForExtension") // tasks need non-final getters
 public class CondaBuildCheck extends AbstractExecTask<CondaBuildCheck> {
     private static final Logger LOG = LoggerFactory.getLogger(CondaBuildCheck.class);
@@ -35,6 +44,9 @@ public class CondaBuildCheck extends AbstractExecTask<CondaBuildCheck> {
     private static final String DEFAULT_GROUP = "build";
     private static final String DEFAULT_DESCRIPTION = "Runs `conda build --check` to only check (validate) the recipe.";
 
+    private File bootstrapDirectory;
+    private boolean useCondaWorker;
+
     public static CondaBuildCheck createTask(TaskContainer tasks, SetupCondaBuild setupCondaBuild) {
         Objects.requireNonNull(tasks, "tasks must not be null");
         Objects.requireNonNull(setupCondaBuild, "setupCondaBuild must not be null");
@@ -52,14 +64,50 @@ public class CondaBuildCheck extends AbstractExecTask<CondaBuildCheck> {
         super(CondaBuildCheck.class);
     }
 
+    /**
+     * Returns the file recording that the recipe passed the check, which lets an unchanged recipe skip re-checking.
+     */
+    public File getSuccessMarker() {
+        return new File(getTemporaryDir(), "recipe-checked");
+    }
+
     public void configureAfterEvaluate(final MinicondaExtension miniconda) {
         Objects.requireNonNull(miniconda, "miniconda must not be null");
 
-        executable(miniconda.getBootstrapDirectory().toPath().resolve("bin/conda"));
-        args("build", miniconda.getMetaYaml());
+        bootstrapDirectory = miniconda.getBootstrapDirectory();
+        useCondaWorker = miniconda.getUseCondaWorker();
+        executable(bootstrapDirectory.toPath().resolve("bin/conda"));
+        args("build");
+        args(miniconda.getRecipes());
         args("--check");
 
+        CondaRecipeInputs.configure(this, miniconda);
+        getOutputs().file(getSuccessMarker()).withPropertyName("successMarker");
+        doLast(new Action<Task>() {
+            @Override
+            public void execute(Task task) {
+                try {
+                    Files.write(getSuccessMarker().toPath(), new byte[0]);
+                } catch (IOException e) {
+                    throw new GradleException("Failed to record successful recipe check", e);
+                }
+            }
+        });
+
         LOG.info("{} configured to execute {}", getName(), getCommandLine());
     }
 
+    /**
+     * Checks the recipes in the shared conda worker when it is enabled, instead of starting a separate conda process.
+     */
+    @Override
+    @TaskAction
+    protected void exec() {
+        if (!useCondaWorker) {
+            super.exec();
+            return;
+        }
+        new CondaCommand(bootstrapDirectory, true).args(getArgs()).execute(getExecActionFactory());
+    }
+
 }
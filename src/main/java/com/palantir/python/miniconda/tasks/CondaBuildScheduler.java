@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import com.palantir.python.miniconda.CondaRecipe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.gradle.api.GradleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds a set of recipes on a bounded pool of threads, starting each recipe as soon as every other recipe producing
+ * one of its requirements has been built.
+ *
+ * @author agent
+ */
+final class CondaBuildScheduler {
+    private static final Logger LOG = LoggerFactory.getLogger(CondaBuildScheduler.class);
+
+    /**
+     * Builds a single recipe; {@code index} is the recipe's position in the list passed to the scheduler.
+     */
+    interface RecipeBuild {
+        void build(CondaRecipe recipe, int index);
+    }
+
+    private final List<CondaRecipe> recipes;
+    private final List<Set<Integer>> dependencies;
+
+    CondaBuildScheduler(List<CondaRecipe> recipes) {
+        this.recipes = Collections.unmodifiableList(new ArrayList<>(recipes));
+        this.dependencies = computeDependencies(this.recipes);
+    }
+
+    /**
+     * Returns the indices of the recipes that recipe {@code index} depends on.
+     */
+    Set<Integer> getDependencies(int index) {
+        return dependencies.get(index);
+    }
+
+    void buildAll(int parallelism, final RecipeBuild build) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+        Set<Integer> pending = new TreeSet<>();
+        Set<Integer> built = new TreeSet<>();
+        for (int i = 0; i < recipes.size(); i++) {
+            pending.add(i);
+        }
+
+        int running = 0;
+        GradleException failure = null;
+        try {
+            running += submitReady(completion, pending, built, build);
+            while (running > 0) {
+                Future<Integer> result = completion.take();
+                running--;
+                try {
+                    built.add(result.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new GradleException("conda build failed", e.getCause());
+                    }
+                }
+                if (failure == null) {
+                    running += submitReady(completion, pending, built, build);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while building conda recipes", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private int submitReady(
+            CompletionService<Integer> completion, Set<Integer> pending, Set<Integer> built, final RecipeBuild build) {
+        List<Integer> ready = new ArrayList<>();
+        for (Integer index : pending) {
+            if (built.containsAll(dependencies.get(index))) {
+                ready.add(index);
+            }
+        }
+        for (final Integer index : ready) {
+            pending.remove(index);
+            LOG.info("Building conda recipe {}", recipes.get(index).getDirectory());
+            completion.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    build.build(recipes.get(index), index);
+                    return index;
+                }
+            });
+        }
+        return ready.size();
+    }
+
+    private static List<Set<Integer>> computeDependencies(List<CondaRecipe> recipes) {
+        Map<String, Integer> producers = new TreeMap<>();
+        for (int i = 0; i < recipes.size(); i++) {
+            String packageName = recipes.get(i).getPackageName();
+            if (packageName != null) {
+                producers.put(packageName, i);
+            }
+        }
+
+        List<Set<Integer>> dependencies = new ArrayList<>();
+        for (int i = 0; i < recipes.size(); i++) {
+            Set<Integer> recipeDependencies = new TreeSet<>();
+            for (String requirement : recipes.get(i).getRequirements()) {
+                Integer producer = producers.get(requirement);
+                if (producer != null && producer != i) {
+                    recipeDependencies.add(producer);
+                }
+            }
+            dependencies.add(Collections.unmodifiableSet(recipeDependencies));
+        }
+        checkAcyclic(recipes, dependencies);
+        return Collections.unmodifiableList(dependencies);
+    }
+
+    private static void checkAcyclic(List<CondaRecipe> recipes, List<Set<Integer>> dependencies) {
+        Set<Integer> resolved = new TreeSet<>();
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int i = 0; i < recipes.size(); i++) {
+                if (!resolved.contains(i) && resolved.containsAll(dependencies.get(i))) {
+                    resolved.add(i);
+                    progress = true;
+                }
+            }
+        }
+        if (resolved.size() != recipes.size()) {
+            List<String> cyclic = new ArrayList<>();
+            for (int i = 0; i < recipes.size(); i++) {
+                if (!resolved.contains(i)) {
+                    cyclic.add(recipes.get(i).getDirectory().toString());
+                }
+            }
+            throw new GradleException("Conda recipes have cyclic requirements: " + cyclic);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import com.palantir.python.miniconda.CondaWorker;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.gradle.api.GradleException;
+import org.gradle.process.internal.ExecAction;
+import org.gradle.process.internal.ExecActionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a conda command of a bootstrap install, either in the install's shared {@link CondaWorker} or, when the worker
+ * is disabled or fails, as a separate {@code conda} process.
+ *
+ * <p>Output that is not captured by the caller is logged at info level when it comes from the worker, and forwarded
+ * by Gradle as usual otherwise. The worker streams output as the command writes it, so commands with a lot of output
+ * are not held in memory.
+ *
+ * @author agent
+ */
+final class CondaCommand {
+    private static final Logger LOG = LoggerFactory.getLogger(CondaCommand.class);
+
+    private final File bootstrapDirectory;
+    private final boolean useWorker;
+    private final List<String> args = new ArrayList<>();
+    private OutputStream standardOutput;
+    private OutputStream errorOutput;
+    private boolean ignoreExitValue;
+
+    CondaCommand(File bootstrapDirectory, boolean useWorker) {
+        this.bootstrapDirectory = bootstrapDirectory;
+        this.useWorker = useWorker;
+    }
+
+    CondaCommand args(Object... arguments) {
+        for (Object argument : arguments) {
+            args.add(argument.toString());
+        }
+        return this;
+    }
+
+    CondaCommand args(Iterable<?> arguments) {
+        for (Object argument : arguments) {
+            args.add(argument.toString());
+        }
+        return this;
+    }
+
+    CondaCommand setStandardOutput(OutputStream standardOutput) {
+        this.standardOutput = standardOutput;
+        return this;
+    }
+
+    CondaCommand setErrorOutput(OutputStream errorOutput) {
+        this.errorOutput = errorOutput;
+        return this;
+    }
+
+    CondaCommand setIgnoreExitValue(boolean ignoreExitValue) {
+        this.ignoreExitValue = ignoreExitValue;
+        return this;
+    }
+
+    /**
+     * Runs the command and returns its exit value.
+     *
+     * @throws GradleException if the command fails and the exit value is not ignored
+     */
+    int execute(ExecActionFactory execActionFactory) {
+        if (useWorker) {
+            Integer exitValue = executeInWorker();
+            if (exitValue != null) {
+                return exitValue;
+            }
+        }
+
+        ExecAction execAction = execActionFactory.newExecAction();
+        execAction.executable(bootstrapDirectory.toPath().resolve("bin/conda"));
+        execAction.args(args);
+        if (standardOutput != null) {
+            execAction.setStandardOutput(standardOutput);
+        }
+        if (errorOutput != null) {
+            execAction.setErrorOutput(errorOutput);
+        }
+        execAction.setIgnoreExitValue(ignoreExitValue);
+        return execAction.execute().getExitValue();
+    }
+
+    /**
+     * Runs the command in the worker, returning {@code null} if it has to be run as a separate process instead. Output
+     * is streamed to the configured destinations; output that is not captured is kept up to the capacity of an
+     * {@link OutputTail} and logged once the command finishes.
+     */
+    private Integer executeInWorker() {
+        OutputTail standardOutputTail = new OutputTail();
+        OutputTail errorOutputTail = new OutputTail();
+        Tee out = new Tee(standardOutput != null ? standardOutput : standardOutputTail, null);
+        Tee err = new Tee(errorOutputTail, errorOutput);
+        int exitValue;
+        try {
+            exitValue = CondaWorker.get(bootstrapDirectory).run(args, out, err);
+        } catch (IOException e) {
+            if (out.isWritten() || err.isWritten()) {
+                // running the command again would repeat the output already written
+                throw new GradleException("conda worker failed while running conda " + args, e);
+            }
+            LOG.warn("conda worker unavailable, running conda {} as a separate process", args, e);
+            return null;
+        }
+
+        if (standardOutput == null) {
+            log(standardOutputTail);
+        }
+        if (errorOutput == null) {
+            log(errorOutputTail);
+        }
+        if (exitValue != 0 && !ignoreExitValue) {
+            throw new GradleException("conda " + args + " finished with non-zero exit value " + exitValue + ":\n"
+                    + errorOutputTail);
+        }
+        return exitValue;
+    }
+
+    private static void log(OutputTail output) {
+        String text = output.toString();
+        if (!text.isEmpty()) {
+            LOG.info(text);
+        }
+    }
+
+    /**
+     * Writes to one or two streams, recording whether anything was written.
+     */
+    private static final class Tee extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+        private boolean written = false;
+
+        Tee(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            written |= len > 0;
+            first.write(b, off, len);
+            if (second != null) {
+                second.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            if (second != null) {
+                second.flush();
+            }
+        }
+
+        boolean isWritten() {
+            return written;
+        }
+    }
+}
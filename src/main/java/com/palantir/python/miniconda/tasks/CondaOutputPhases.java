@@ -0,0 +1,196 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import com.palantir.python.miniconda.CondaTimings;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.gradle.internal.logging.progress.ProgressLogger;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+
+/**
+ * Splits the run of a conda command into phases by watching its output for the markers conda and conda-build print
+ * when they move on, e.g. from solving to fetching packages, and records the phases once the command finished.
+ *
+ * <p>Output is split into records at newlines and at the NUL characters separating the progress documents of
+ * {@code conda --json}. Phases only ever advance; if none of the markers shows up, the whole command is recorded as a
+ * single phase. The output is forwarded to a delegate, if any, and only its tail is kept in memory so that it can be
+ * reported on failure; records are inspected up to a bounded length, so arbitrarily long output is streamed through.
+ *
+ * @author agent
+ */
+final class CondaOutputPhases extends OutputStream {
+    // markers and progress documents are short, longer records are only inspected up to this length
+    private static final int MAX_RECORD_LENGTH = 4096;
+    private static final int MAX_STATUS_LENGTH = 80;
+    private static final Pattern FETCH = Pattern.compile("\"fetch\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final CondaTimings timings;
+    private final String task;
+    private final String subject;
+    private final String commandPhase;
+    private final OutputStream delegate;
+    private final List<String> markers = new ArrayList<>();
+    private final List<String> markerPhases = new ArrayList<>();
+    private final List<String> phases = new ArrayList<>();
+    private final List<Long> phaseStarts = new ArrayList<>();
+    private final byte[] record = new byte[MAX_RECORD_LENGTH];
+    private final OutputTail tail = new OutputTail();
+    private int recordLength = 0;
+    private int reachedMarker = -1;
+    private ProgressLogger progress;
+
+    private CondaOutputPhases(
+            CondaTimings timings, String task, String subject, String commandPhase, String initialPhase,
+            OutputStream delegate) {
+        this.timings = timings;
+        this.task = task;
+        this.subject = subject;
+        this.commandPhase = commandPhase;
+        this.delegate = delegate;
+        phases.add(initialPhase);
+        phaseStarts.add(System.currentTimeMillis());
+    }
+
+    /**
+     * Times a {@code conda create} or {@code conda install}: solving, fetching and linking packages.
+     */
+    static CondaOutputPhases forInstall(CondaTimings timings, String task, String commandPhase, OutputStream delegate) {
+        return new CondaOutputPhases(timings, task, null, commandPhase, "solve", delegate)
+                .marker("\"fetch\"", "fetch")
+                .marker("Fetching packages", "fetch")
+                .marker("Downloading and Extracting Packages", "fetch")
+                .marker("Extracting packages", "extract")
+                .marker("Preparing transaction", "link")
+                .marker("Linking packages", "link");
+    }
+
+    /**
+     * Times a {@code conda build} of {@code recipe}: setting up the build environment, building and testing.
+     */
+    static CondaOutputPhases forBuild(CondaTimings timings, String task, String recipe, OutputStream delegate) {
+        return new CondaOutputPhases(timings, task, recipe, "build", "setup", delegate)
+                .marker("BUILD START", "build")
+                .marker("TEST START", "test");
+    }
+
+    /**
+     * Reports the phases and the packages being fetched as progress of a Gradle operation named {@code description}.
+     */
+    CondaOutputPhases withProgress(ProgressLoggerFactory progressLoggerFactory, String description) {
+        progress = progressLoggerFactory.newOperation(CondaOutputPhases.class);
+        progress.setDescription(description);
+        progress.started();
+        progress.progress(phases.get(0));
+        return this;
+    }
+
+    private CondaOutputPhases marker(String text, String phase) {
+        markers.add(text);
+        markerPhases.add(phase);
+        return this;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (delegate != null) {
+            delegate.write(b, off, len);
+        }
+        tail.write(b, off, len);
+        for (int i = off; i < off + len; i++) {
+            if (b[i] == '\n' || b[i] == 0) {
+                endRecord();
+            } else if (recordLength < record.length) {
+                record[recordLength++] = b[i];
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (delegate != null) {
+            delegate.flush();
+        }
+    }
+
+    private void endRecord() {
+        String text = new String(record, 0, recordLength, StandardCharsets.UTF_8);
+        recordLength = 0;
+        for (int i = markers.size() - 1; i > reachedMarker; i--) {
+            if (text.contains(markers.get(i))) {
+                reachedMarker = i;
+                String phase = markerPhases.get(i);
+                if (!phase.equals(phases.get(phases.size() - 1))) {
+                    phases.add(phase);
+                    phaseStarts.add(System.currentTimeMillis());
+                    reportProgress(phase);
+                }
+                break;
+            }
+        }
+        Matcher fetch = FETCH.matcher(text);
+        if (fetch.find()) {
+            reportProgress("fetch " + fetch.group(1));
+        }
+    }
+
+    private void reportProgress(String status) {
+        if (progress != null) {
+            progress.progress(status.length() > MAX_STATUS_LENGTH ? status.substring(0, MAX_STATUS_LENGTH) : status);
+        }
+    }
+
+    /**
+     * Returns the last {@value OutputTail#DEFAULT_CAPACITY} bytes of output, for reporting failures.
+     */
+    synchronized String getTail() {
+        return tail.toString();
+    }
+
+    /**
+     * Records the phases seen, ending the last one now.
+     */
+    synchronized void finish() {
+        if (recordLength > 0) {
+            endRecord();
+        }
+        if (progress != null) {
+            progress.completed();
+            progress = null;
+        }
+        long end = System.currentTimeMillis();
+        if (reachedMarker < 0) {
+            timings.record(task, commandPhase, subject, phaseStarts.get(0), end - phaseStarts.get(0));
+            return;
+        }
+        for (int i = 0; i < phases.size(); i++) {
+            long start = phaseStarts.get(i);
+            long phaseEnd = i + 1 < phases.size() ? phaseStarts.get(i + 1) : end;
+            timings.record(task, phases.get(i), subject, start, phaseEnd - start);
+        }
+    }
+}
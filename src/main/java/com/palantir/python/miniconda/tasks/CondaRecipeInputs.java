@@ -0,0 +1,157 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import com.palantir.python.miniconda.CondaRecipe;
+import com.palantir.python.miniconda.MinicondaExtension;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.file.ConfigurableFileTree;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.PathSensitivity;
+
+/**
+ * Declares the inputs of tasks running {@code conda build} on recipes: the recipes themselves, the local sources they
+ * references and the settings that influence the built package. File inputs are tracked by relative path so that
+ * results can be shared through the build cache between checkouts in different locations.
+ *
+ * @author agent
+ */
+final class CondaRecipeInputs {
+    private static final String GRADLE_DIRECTORY = ".gradle";
+
+    static void configure(Task task, MinicondaExtension miniconda) {
+        Project project = task.getProject();
+        List<File> recipes = new ArrayList<>();
+        for (Path recipe : miniconda.getRecipes()) {
+            recipes.add(recipe.toFile());
+        }
+
+        task.getInputs().files(recipes)
+                .withPropertyName("recipes")
+                .withPathSensitivity(PathSensitivity.RELATIVE);
+        // recipes are only parsed for their sources once Gradle checks whether the task is up-to-date, so each tree is
+        // created now but only rooted at the directory containing its recipe's sources then
+        Spec<FileTreeElement> excluded = excluding(
+                project.getBuildDir(),
+                new File(project.getRootDir(), GRADLE_DIRECTORY),
+                new File(project.getProjectDir(), GRADLE_DIRECTORY),
+                miniconda.getBuildEnvironmentDirectory(),
+                miniconda.getBuildOutputDirectory());
+        List<ConfigurableFileTree> sources = new ArrayList<>();
+        for (File recipe : recipes) {
+            final RecipeSources recipeSources = new RecipeSources(recipe);
+            ConfigurableFileTree tree = project.fileTree(new Callable<File>() {
+                @Override
+                public File call() {
+                    return recipeSources.getRoot();
+                }
+            });
+            tree.exclude(excluded);
+            tree.exclude(new Spec<FileTreeElement>() {
+                @Override
+                public boolean isSatisfiedBy(FileTreeElement element) {
+                    return !recipeSources.contains(element.getFile());
+                }
+            });
+            sources.add(tree);
+        }
+        task.getInputs().files(sources).withPropertyName("sources").withPathSensitivity(PathSensitivity.RELATIVE);
+        task.getInputs().property("channels", miniconda.getChannels());
+        task.getInputs().property("conda-build-version", miniconda.getCondaBuildVersion());
+    }
+
+    private static Spec<FileTreeElement> excluding(final File... excludedDirectories) {
+        return new Spec<FileTreeElement>() {
+            @Override
+            public boolean isSatisfiedBy(FileTreeElement element) {
+                Path path = element.getFile().toPath();
+                for (File excluded : excludedDirectories) {
+                    if (excluded != null && path.startsWith(excluded.getAbsoluteFile().toPath())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The local sources of a recipe, parsed when they are first needed.
+     */
+    private static final class RecipeSources {
+        private final File recipe;
+        private List<Path> sourcePaths;
+
+        RecipeSources(File recipe) {
+            this.recipe = recipe;
+        }
+
+        private synchronized List<Path> getSourcePaths() {
+            if (sourcePaths == null) {
+                sourcePaths = new ArrayList<>();
+                for (File source : CondaRecipe.parse(recipe).getSourcePaths()) {
+                    sourcePaths.add(source.getAbsoluteFile().toPath().normalize());
+                }
+            }
+            return sourcePaths;
+        }
+
+        /**
+         * Returns the deepest directory containing all sources, which their relative paths start from.
+         */
+        File getRoot() {
+            Path root = null;
+            for (Path source : getSourcePaths()) {
+                Path directory = Files.isDirectory(source) ? source : source.getParent();
+                if (root == null) {
+                    root = directory;
+                }
+                while (root != null && !directory.startsWith(root)) {
+                    root = root.getParent();
+                }
+            }
+            if (root == null) {
+                // no sources, or none sharing a root with the others, which are then not tracked
+                return recipe.isDirectory() ? recipe : recipe.getAbsoluteFile().getParentFile();
+            }
+            return root.toFile();
+        }
+
+        /**
+         * Returns whether {@code file} is a source or a directory on the way to one.
+         */
+        boolean contains(File file) {
+            Path path = file.getAbsoluteFile().toPath().normalize();
+            for (Path source : getSourcePaths()) {
+                if (path.startsWith(source) || source.startsWith(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private CondaRecipeInputs() {}
+}
@@ -21,8 +21,10 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Objects;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
 import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskContainer;
@@ -37,7 +39,9 @@ public class ConfigureRootCondaEnv extends DefaultTask {
     private static final String DEFAULT_GROUP = "build";
     private static final String DEFAULT_DESCRIPTION = "Configures the root conda env (writes a .condarc).";
 
-    private MinicondaExtension miniconda;
+    private File outputFile;
+    private boolean readOnly;
+    private String condaRc;
 
     public static ConfigureRootCondaEnv createTask(TaskContainer tasks, BootstrapPython bootstrapPython) {
         Objects.requireNonNull(tasks, "tasks must not be null");
@@ -54,23 +58,50 @@ public class ConfigureRootCondaEnv extends DefaultTask {
 
     @OutputFile
     public File getOutputFile() {
-        return new File(miniconda.getBootstrapDirectory(), ".condarc");
+        return outputFile;
     }
 
     @TaskAction
     public void createCondaRcFile() {
         LOG.info("writing a condarc file to {}", getOutputFile().getAbsolutePath());
 
-        String condaRc = "channels: []\ndefault_channels: []\n";
+        byte[] contents = condaRc.getBytes(StandardCharsets.UTF_8);
 
         try {
-            Files.write(getOutputFile().toPath(), condaRc.getBytes(StandardCharsets.UTF_8));
+            if (getOutputFile().isFile() && Arrays.equals(Files.readAllBytes(getOutputFile().toPath()), contents)) {
+                return;
+            }
+            // installs in read-only bootstrap prefixes are used as they were provisioned
+            if (readOnly || getOutputFile().isFile() && !getOutputFile().canWrite()) {
+                LOG.warn("Not writing {} into the read-only Miniconda install, conda uses the configuration the"
+                        + " install was provisioned with", getOutputFile());
+                return;
+            }
+            Files.write(getOutputFile().toPath(), contents);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new GradleException("Failed to write conda configuration " + getOutputFile(), e);
         }
     }
 
     public void configureAfterEvaluate(final MinicondaExtension minicondaExtension) {
-        this.miniconda = minicondaExtension;
+        Objects.requireNonNull(minicondaExtension, "minicondaExtension must not be null");
+        File bootstrapDirectory = minicondaExtension.getBootstrapDirectory();
+        outputFile = new File(bootstrapDirectory, ".condarc");
+        readOnly = !minicondaExtension.isWritableBootstrapDirectory(bootstrapDirectory);
+        condaRc = createCondaRc(minicondaExtension);
+        getInputs().property("condarc", condaRc);
+    }
+
+    /**
+     * Returns the configuration of the root env, which points every bootstrap install at the shared package cache if
+     * it is enabled.
+     */
+    private static String createCondaRc(MinicondaExtension miniconda) {
+        StringBuilder condaRc = new StringBuilder("channels: []\ndefault_channels: []\n");
+        if (miniconda.getUseSharedPackageCache()) {
+            condaRc.append("pkgs_dirs:\n  - ").append(miniconda.getSharedPackageCacheDirectory().getAbsolutePath())
+                    .append('\n');
+        }
+        return condaRc.toString();
     }
 }
@@ -16,34 +16,208 @@
 
 package com.palantir.python.miniconda.tasks;
 
+import com.palantir.python.miniconda.CrossProcessLock;
+import com.palantir.python.miniconda.EnvironmentManifest;
+import com.palantir.python.miniconda.Hashes;
+import com.palantir.python.miniconda.EnvironmentSpec;
 import com.palantir.python.miniconda.MinicondaExtension;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import org.gradle.api.Project;
+import java.util.Objects;
+import java.util.Set;
+import org.gradle.api.GradleException;
+import org.gradle.api.Task;
+import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.AbstractExecTask;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.TaskContainer;
+import org.gradle.process.internal.ExecAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Installs pip packages into the Python environment.
  *
+ * <p>Requirements are first built into a wheelhouse shared by all projects using the same bootstrap prefix, so each
+ * requirement is downloaded and built once per machine, and then installed from the wheelhouse without consulting an
+ * index. The installed requirements are recorded in the build directory rather than in the environment, which
+ * {@link SetupPython} tracks, together with a digest of the environment's manifest. Later runs against the same
+ * environment only install requirements whose spec changed and uninstall the ones that were dropped; an environment
+ * that {@link SetupPython} changed since gets all requirements installed.
+ *
  * @author mnazbro
  */
+@SuppressWarnings("checkstyle:DesignForExtension") // tasks need non-final getters
 public class InstallPipPackages extends AbstractExecTask<InstallPipPackages> {
+    private static final Logger LOG = LoggerFactory.getLogger(InstallPipPackages.class);
+
+    private static final String DEFAULT_GROUP = "build";
+    private static final String DEFAULT_DESCRIPTION = "Installs pip packages into the conda env.";
+    private static final String INSTALLED_REQUIREMENTS = "miniconda/pip-requirements";
+    private static final String ENVIRONMENT_PREFIX = "environment ";
+    private static final String LOCK_SUFFIX = ".lock";
+
+    public static InstallPipPackages createTask(TaskContainer tasks, SetupPython setupPython) {
+        Objects.requireNonNull(tasks, "tasks must not be null");
+        Objects.requireNonNull(setupPython, "setupPython must not be null");
 
-    public static InstallPipPackages createTask(
-            Project project,
-            MinicondaExtension miniconda,
-            SetupPython setupPython,
-            List<String> requirements) {
-        InstallPipPackages task = project.getTasks().create("installPipPackages", InstallPipPackages.class);
+        InstallPipPackages task = tasks.create("installPipPackages", InstallPipPackages.class);
+        task.setGroup(DEFAULT_GROUP);
+        task.setDescription(DEFAULT_DESCRIPTION);
         task.dependsOn(setupPython);
-        task.executable(miniconda.getBuildEnvironmentDirectory().toPath().resolve("bin/pip"));
-        task.args("install");
-        task.args(requirements);
 
-        CleanTaskUtils.createCleanupTask(project.getTasks(), task);
+        CleanTaskUtils.createCleanupTask(tasks, task);
         return task;
     }
 
+    private File installedRequirements;
+    private File environment;
+    private List<String> pipPackages;
+    private List<String> pipFindLinks;
+    private boolean pipNoIndex;
+    private File wheelhouse;
+
     public InstallPipPackages() {
         super(InstallPipPackages.class);
     }
+
+    public void configureAfterEvaluate(final MinicondaExtension miniconda) {
+        Objects.requireNonNull(miniconda, "miniconda must not be null");
+
+        installedRequirements = new File(getProject().getBuildDir(), INSTALLED_REQUIREMENTS);
+        environment = miniconda.getBuildEnvironmentDirectory();
+        pipPackages = new ArrayList<>(miniconda.getPipPackages());
+        pipFindLinks = new ArrayList<>(miniconda.getPipFindLinks());
+        pipNoIndex = miniconda.getPipNoIndex();
+        wheelhouse = miniconda.getPipWheelhouseDirectory();
+
+        getInputs().property("pipPackages", miniconda.getPipPackages());
+        getInputs().property("pipFindLinks", miniconda.getPipFindLinks());
+        getInputs().property("pipNoIndex", miniconda.getPipNoIndex());
+        // the pip packages live in the conda environment, so they have to be reinstalled whenever it changes
+        getInputs().property("environment", EnvironmentSpec.of(miniconda).describe());
+        if (miniconda.getUseLockFile()) {
+            getInputs().files(miniconda.getLockFile()).withPropertyName("lockFile");
+        }
+        getOutputs().file(installedRequirements).withPropertyName("installedRequirements");
+
+        executable(environment.toPath().resolve("bin/pip"));
+        final boolean hasPipPackages = !pipPackages.isEmpty();
+        final File requirementsRecord = installedRequirements;
+        onlyIf(new Spec<Task>() {
+            @Override
+            public boolean isSatisfiedBy(Task task) {
+                return hasPipPackages || requirementsRecord.isFile();
+            }
+        });
+    }
+
+    @Override
+    @TaskAction
+    protected void exec() {
+        try {
+            String environmentDigest = computeEnvironmentDigest(environment);
+            Set<String> previous = readInstalledRequirements(environmentDigest);
+            Set<String> current = new LinkedHashSet<>(pipPackages);
+            List<String> added = new ArrayList<>(current);
+            added.removeAll(previous);
+            List<String> removed = EnvironmentSpec.getRemovedPackageNames(previous, current);
+            LOG.info("Updating pip packages in {}: removing {}, installing {}", environment, removed, added);
+
+            Files.deleteIfExists(installedRequirements.toPath());
+            if (!removed.isEmpty()) {
+                List<Object> args = new ArrayList<>();
+                args.add("uninstall");
+                args.add("--yes");
+                args.addAll(removed);
+                pip(args);
+            }
+            if (!added.isEmpty()) {
+                buildWheels(added);
+                List<Object> args = new ArrayList<>();
+                args.add("install");
+                args.add("--no-index");
+                args.add("--find-links");
+                args.add(wheelhouse.getAbsolutePath());
+                args.addAll(added);
+                pip(args);
+            }
+
+            StringBuilder content = new StringBuilder();
+            content.append(ENVIRONMENT_PREFIX).append(environmentDigest).append('\n');
+            for (String requirement : current) {
+                content.append(requirement).append('\n');
+            }
+            Files.createDirectories(installedRequirements.getParentFile().toPath());
+            Files.write(installedRequirements.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new GradleException("Failed to install pip packages into " + environment, e);
+        }
+    }
+
+    /**
+     * Identifies the state of the environment by the manifest {@link SetupPython} writes whenever it creates or
+     * updates it.
+     */
+    private static String computeEnvironmentDigest(File environment) throws IOException {
+        File manifest = EnvironmentManifest.getFile(environment);
+        return manifest.isFile() ? Hashes.sha256(manifest.toPath()) : "none";
+    }
+
+    /**
+     * Returns the requirements recorded as installed, or none if they were installed into an environment that has
+     * changed since, e.g. because it was recreated.
+     */
+    private Set<String> readInstalledRequirements(String environmentDigest) throws IOException {
+        Set<String> requirements = new LinkedHashSet<>();
+        if (!installedRequirements.isFile()) {
+            return requirements;
+        }
+        List<String> lines = Files.readAllLines(installedRequirements.toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(ENVIRONMENT_PREFIX + environmentDigest)) {
+            LOG.info("Conda environment changed since pip packages were installed, installing all of them");
+            return requirements;
+        }
+        requirements.addAll(lines.subList(1, lines.size()));
+        return requirements;
+    }
+
+    /**
+     * Builds wheels for {@code requirements} into the shared wheelhouse. Wheels already there satisfy requirements
+     * without a download; the wheelhouse is locked so concurrent builds do not write the same wheel twice.
+     */
+    private void buildWheels(List<String> requirements) throws IOException {
+        File lockFile = new File(wheelhouse.getParentFile(), wheelhouse.getName() + LOCK_SUFFIX);
+        try (CrossProcessLock ignored = CrossProcessLock.acquire(lockFile)) {
+            Files.createDirectories(wheelhouse.toPath());
+            List<Object> args = new ArrayList<>();
+            args.add("wheel");
+            args.add("--wheel-dir");
+            args.add(wheelhouse.getAbsolutePath());
+            args.add("--find-links");
+            args.add(wheelhouse.getAbsolutePath());
+            for (String findLinks : pipFindLinks) {
+                args.add("--find-links");
+                args.add(findLinks);
+            }
+            if (pipNoIndex) {
+                args.add("--no-index");
+            }
+            args.addAll(requirements);
+            pip(args);
+        }
+    }
+
+    private void pip(List<Object> args) {
+        ExecAction execAction = getExecActionFactory().newExecAction();
+        execAction.executable(getExecutable());
+        execAction.args(args);
+        LOG.info("{} executing {}", getName(), execAction.getCommandLine());
+        execAction.execute();
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import com.palantir.python.miniconda.CrossProcessLock;
+import com.palantir.python.miniconda.FileTreeUtils;
+import com.palantir.python.miniconda.Hashes;
+import com.palantir.python.miniconda.MinicondaExtension;
+import com.palantir.python.miniconda.MinicondaUtils;
+import com.palantir.python.miniconda.PackageSources;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import org.gradle.api.GradleException;
+import org.gradle.api.Task;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.AbstractExecTask;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.TaskContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the configured packages once and records the result as an explicit conda spec, listing the URL and md5 of
+ * every package, so that {@link SetupPython} can install exactly those packages without running the conda solver.
+ *
+ * <p>The first line of the lock records a hash of the packages and channels it was resolved from. The lock is only
+ * regenerated when they change, which also holds for a lock checked into version control on a fresh checkout.
+ *
+ * @author agent
+ */
+@SuppressWarnings("checkstyle:DesignForExtension") // tasks need non-final getters
+public class LockCondaEnvironment extends AbstractExecTask<LockCondaEnvironment> {
+    private static final Logger LOG = LoggerFactory.getLogger(LockCondaEnvironment.class);
+
+    private static final String DEFAULT_GROUP = "build";
+    private static final String DEFAULT_DESCRIPTION = "Resolves the conda packages into an explicit lock file.";
+    private static final String INPUTS_HEADER = "# miniconda-inputs: ";
+
+    public static LockCondaEnvironment createTask(TaskContainer tasks, ConfigureRootCondaEnv configureRootCondaEnv) {
+        Objects.requireNonNull(tasks, "tasks must not be null");
+        Objects.requireNonNull(configureRootCondaEnv, "configureRootCondaEnv must not be null");
+
+        LockCondaEnvironment task = tasks.create("lockCondaEnvironment", LockCondaEnvironment.class);
+        task.setGroup(DEFAULT_GROUP);
+        task.setDescription(DEFAULT_DESCRIPTION);
+        task.dependsOn(configureRootCondaEnv);
+        return task;
+    }
+
+    private File bootstrapDirectory;
+    private boolean useCondaWorker;
+    private File lockFile;
+    private String inputsHash;
+    private PackageSources packageSources;
+
+    public LockCondaEnvironment() {
+        super(LockCondaEnvironment.class);
+    }
+
+    public void configureAfterEvaluate(final MinicondaExtension miniconda) {
+        Objects.requireNonNull(miniconda, "miniconda must not be null");
+
+        bootstrapDirectory = miniconda.getBootstrapDirectory();
+        useCondaWorker = miniconda.getUseCondaWorker();
+        lockFile = miniconda.getLockFile();
+        inputsHash = computeInputsHash(miniconda);
+        packageSources = PackageSources.of(miniconda);
+
+        getInputs().property("packages", miniconda.getPackages());
+        getInputs().property("channels", miniconda.getChannels());
+        getInputs().property("pythonVersion", miniconda.getPythonVersion());
+        getInputs().property("minicondaVersion", miniconda.getMinicondaVersion());
+        getInputs().property("platform", MinicondaUtils.getPlatformSubdir());
+        getOutputs().file(lockFile).withPropertyName("lockFile");
+
+        List<Object> args = new ArrayList<>();
+        args.addAll(Arrays.asList("create", "--yes", "--quiet", "-p", getResolutionPrefix()));
+        args.add("--override-channels");
+        args.addAll(packageSources.getChannelArgs());
+        args.addAll(miniconda.getPackages());
+        executable(bootstrapDirectory.toPath().resolve("bin/conda"));
+        args(args);
+
+        final File currentLockFile = lockFile;
+        final String currentInputsHash = inputsHash;
+        onlyIf(new Spec<Task>() {
+            @Override
+            public boolean isSatisfiedBy(Task task) {
+                boolean current = isLockCurrent(currentLockFile, currentInputsHash);
+                LOG.debug("Lock file {} up to date: {}", currentLockFile, current);
+                return !current;
+            }
+        });
+        LOG.info("{} configured to execute {}", getName(), getCommandLine());
+    }
+
+    /**
+     * Returns whether the lock file exists and was resolved from the currently configured packages and channels, on
+     * this platform and with the configured Python and Miniconda versions.
+     */
+    public static boolean isLockCurrent(MinicondaExtension miniconda) {
+        return isLockCurrent(miniconda.getLockFile(), computeInputsHash(miniconda));
+    }
+
+    private static boolean isLockCurrent(File lockFile, String inputsHash) {
+        if (!lockFile.isFile()) {
+            return false;
+        }
+        try {
+            List<String> lines = Files.readAllLines(lockFile.toPath(), StandardCharsets.UTF_8);
+            return !lines.isEmpty() && lines.get(0).equals(INPUTS_HEADER + inputsHash);
+        } catch (IOException e) {
+            LOG.debug("Failed to read lock file {}", lockFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Solves the environment by creating it in a scratch prefix, then exports the linked packages.
+     */
+    @Override
+    @TaskAction
+    protected void exec() {
+        File prefix = getResolutionPrefix();
+        try {
+            FileTreeUtils.deleteRecursively(prefix.toPath());
+            try (CrossProcessLock ignored = packageSources.lockPackageCache()) {
+                super.exec();
+            }
+
+            ByteArrayOutputStream explicitSpec = new ByteArrayOutputStream();
+            new CondaCommand(bootstrapDirectory, useCondaWorker)
+                    .args("list", "--explicit", "--md5", "-p", prefix)
+                    .setStandardOutput(explicitSpec)
+                    .execute(getExecActionFactory());
+
+            String lock = INPUTS_HEADER + inputsHash + "\n" + explicitSpec.toString("UTF-8");
+            Files.createDirectories(lockFile.getAbsoluteFile().getParentFile().toPath());
+            Files.write(lockFile.toPath(), lock.getBytes(StandardCharsets.UTF_8));
+            LOG.info("Wrote conda lock file {}", lockFile);
+        } catch (IOException e) {
+            throw new GradleException("Failed to write conda lock file " + lockFile, e);
+        } finally {
+            try {
+                FileTreeUtils.deleteRecursively(prefix.toPath());
+            } catch (IOException e) {
+                LOG.warn("Failed to delete {}", prefix, e);
+            }
+        }
+    }
+
+    private File getResolutionPrefix() {
+        return new File(getTemporaryDir(), "env");
+    }
+
+    private static String computeInputsHash(MinicondaExtension miniconda) {
+        List<String> packages = new ArrayList<>(miniconda.getPackages());
+        Collections.sort(packages);
+
+        // explicit specs name platform specific packages resolved by a particular bootstrap install
+        StringBuilder description = new StringBuilder();
+        description.append("platform=").append(MinicondaUtils.getPlatformSubdir()).append('\n');
+        description.append("python=").append(miniconda.getPythonVersion()).append('\n');
+        description.append("miniconda=").append(miniconda.getMinicondaVersion()).append('\n');
+        for (String channel : miniconda.getChannels()) {
+            description.append("channel=").append(channel).append('\n');
+        }
+        for (String pkg : packages) {
+            description.append("package=").append(pkg).append('\n');
+        }
+        return Hashes.sha256(description.toString());
+    }
+}
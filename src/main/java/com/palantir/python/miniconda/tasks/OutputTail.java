@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps only the last bytes written to it, so that the output of long running commands can be reported on failure
+ * without holding all of it in memory.
+ *
+ * @author agent
+ */
+final class OutputTail extends OutputStream {
+    static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final byte[] buffer;
+    private int next = 0;
+    private boolean wrapped = false;
+
+    OutputTail() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    OutputTail(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        buffer[next++] = (byte) b;
+        if (next == buffer.length) {
+            next = 0;
+            wrapped = true;
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        if (len >= buffer.length) {
+            System.arraycopy(b, off + len - buffer.length, buffer, 0, buffer.length);
+            next = 0;
+            wrapped = true;
+            return;
+        }
+        int first = Math.min(len, buffer.length - next);
+        System.arraycopy(b, off, buffer, next, first);
+        System.arraycopy(b, off + first, buffer, 0, len - first);
+        if (next + len >= buffer.length) {
+            wrapped = true;
+        }
+        next = (next + len) % buffer.length;
+    }
+
+    /**
+     * Returns the last non-blank line of the retained output, or an empty string.
+     */
+    String getLastLine() {
+        String[] lines = toString().trim().split("\r?\n");
+        return lines[lines.length - 1].trim();
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (!wrapped) {
+            return new String(buffer, 0, next, StandardCharsets.UTF_8);
+        }
+        byte[] ordered = new byte[buffer.length];
+        System.arraycopy(buffer, next, ordered, 0, buffer.length - next);
+        System.arraycopy(buffer, 0, ordered, buffer.length - next, next);
+        return new String(ordered, StandardCharsets.UTF_8);
+    }
+}
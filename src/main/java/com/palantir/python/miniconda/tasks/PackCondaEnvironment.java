@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import com.palantir.python.miniconda.CondaTimings;
+import com.palantir.python.miniconda.EnvironmentArchive;
+import com.palantir.python.miniconda.EnvironmentCache;
+import com.palantir.python.miniconda.EnvironmentManifest;
+import com.palantir.python.miniconda.EnvironmentSpec;
+import com.palantir.python.miniconda.MinicondaExtension;
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.Task;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.TaskContainer;
+
+/**
+ * Packs the build environment into a relocatable archive that {@link SetupPython} unpacks instead of creating the
+ * environment, e.g. on CI agents that restore the archive directory from a shared cache.
+ *
+ * @author agent
+ */
+@SuppressWarnings("checkstyle:DesignForExtension") // tasks need non-final getters
+public class PackCondaEnvironment extends DefaultTask {
+    private static final String DEFAULT_GROUP = "build";
+    private static final String DEFAULT_DESCRIPTION =
+            "Packs the conda build environment into a relocatable archive for fast restores.";
+
+    private File environment;
+    private EnvironmentSpec spec;
+    private File lockFile;
+    private File archiveDirectory;
+    private CondaTimings timings;
+
+    public static PackCondaEnvironment createTask(TaskContainer tasks, SetupPython setupPython) {
+        Objects.requireNonNull(tasks, "tasks must not be null");
+        Objects.requireNonNull(setupPython, "setupPython must not be null");
+
+        PackCondaEnvironment task = tasks.create("packCondaEnvironment", PackCondaEnvironment.class);
+        task.setGroup(DEFAULT_GROUP);
+        task.setDescription(DEFAULT_DESCRIPTION);
+        task.dependsOn(setupPython);
+        return task;
+    }
+
+    public void configureAfterEvaluate(final MinicondaExtension minicondaExtension) {
+        Objects.requireNonNull(minicondaExtension, "minicondaExtension must not be null");
+        environment = minicondaExtension.getBuildEnvironmentDirectory();
+        spec = EnvironmentSpec.of(minicondaExtension);
+        lockFile = minicondaExtension.getUseLockFile() ? minicondaExtension.getLockFile() : null;
+        archiveDirectory = minicondaExtension.getEnvironmentArchiveDirectory();
+        timings = minicondaExtension.getTimings();
+
+        getInputs().file(EnvironmentManifest.getFile(environment)).withPropertyName("manifest");
+        getOutputs().file(new Callable<File>() {
+            @Override
+            public File call() {
+                return getArchiveFile();
+            }
+        }).withPropertyName("archive");
+
+        // archives are named after the environment they contain, so an existing one never needs repacking, even
+        // when it was restored from a shared cache rather than produced by this build
+        onlyIf(new Spec<Task>() {
+            @Override
+            public boolean isSatisfiedBy(Task task) {
+                return !getArchiveFile().isFile();
+            }
+        });
+    }
+
+    /**
+     * Returns the archive for the currently configured environment.
+     */
+    public File getArchiveFile() {
+        try {
+            return EnvironmentArchive.getArchiveFile(archiveDirectory, EnvironmentCache.computeKey(spec, lockFile));
+        } catch (IOException e) {
+            throw new GradleException("Failed to compute the conda environment key", e);
+        }
+    }
+
+    @TaskAction
+    public void pack() {
+        File archive = getArchiveFile();
+        try (CondaTimings.Phase timing = timings.start(getPath(), "pack")) {
+            EnvironmentArchive.pack(environment.toPath(), archive, Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            throw new GradleException("Failed to pack conda environment " + environment + " into " + archive, e);
+        }
+    }
+}
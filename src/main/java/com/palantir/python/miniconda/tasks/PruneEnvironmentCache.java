@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import com.palantir.python.miniconda.EnvironmentCache;
+import com.palantir.python.miniconda.MinicondaExtension;
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.TaskContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evicts least recently used environments from the shared conda environment cache.
+ *
+ * @author agent
+ */
+@SuppressWarnings("checkstyle:DesignForExtension") // tasks need non-final getters
+public class PruneEnvironmentCache extends DefaultTask {
+    private static final Logger LOG = LoggerFactory.getLogger(PruneEnvironmentCache.class);
+
+    private static final String DEFAULT_GROUP = "build";
+    private static final String DEFAULT_DESCRIPTION = "Evicts least recently used entries from the environment cache.";
+
+    private File cacheDirectory;
+    private int maxEntries;
+    private long maxSizeMb;
+
+    public static PruneEnvironmentCache createTask(TaskContainer tasks) {
+        Objects.requireNonNull(tasks, "tasks must not be null");
+
+        PruneEnvironmentCache task = tasks.create("pruneCondaEnvironmentCache", PruneEnvironmentCache.class);
+        task.setGroup(DEFAULT_GROUP);
+        task.setDescription(DEFAULT_DESCRIPTION);
+        return task;
+    }
+
+    @TaskAction
+    public void prune() {
+        EnvironmentCache cache = new EnvironmentCache(cacheDirectory);
+        try {
+            int evicted = cache.prune(maxEntries, maxSizeMb, null);
+            LOG.info("Evicted {} entries from {}", evicted, cache.getRoot());
+        } catch (IOException e) {
+            throw new GradleException("Failed to prune conda environment cache " + cache.getRoot(), e);
+        }
+    }
+
+    public void configureAfterEvaluate(final MinicondaExtension minicondaExtension) {
+        Objects.requireNonNull(minicondaExtension, "minicondaExtension must not be null");
+        cacheDirectory = minicondaExtension.getEnvironmentCacheDirectory();
+        maxEntries = minicondaExtension.getEnvironmentCacheMaxEntries();
+        maxSizeMb = minicondaExtension.getEnvironmentCacheMaxSizeMb();
+    }
+}
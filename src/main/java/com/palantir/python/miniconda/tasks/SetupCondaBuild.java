@@ -16,18 +16,27 @@
 
 package com.palantir.python.miniconda.tasks;
 
+import com.palantir.python.miniconda.CondaMetadata;
+import com.palantir.python.miniconda.CondaTimings;
+import com.palantir.python.miniconda.CondaWorker;
+import com.palantir.python.miniconda.CrossProcessLock;
+import com.palantir.python.miniconda.EnvironmentManifest;
 import com.palantir.python.miniconda.MinicondaExtension;
-import com.palantir.python.miniconda.MinicondaUtils;
-import java.io.ByteArrayOutputStream;
+import com.palantir.python.miniconda.PackageSources;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Objects;
+import javax.inject.Inject;
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
 import org.gradle.api.Task;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.AbstractExecTask;
+import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskContainer;
-import org.gradle.process.ExecResult;
-import org.gradle.process.internal.ExecAction;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +54,9 @@ public class SetupCondaBuild extends AbstractExecTask<SetupCondaBuild> {
 
     private static final String DEFAULT_GROUP = "build";
     private static final String DEFAULT_DESCRIPTION = "Installs conda-build.";
+    private static final String CONDA_BUILD_PACKAGE = "conda-build";
+    // the version is printed last, possibly after warnings
+    private static final int VERSION_OUTPUT_CAPACITY = 4096;
 
     public static SetupCondaBuild createTask(TaskContainer tasks, ConfigureRootCondaEnv configureRootCondaEnv) {
         Objects.requireNonNull(tasks, "tasks must not be null");
@@ -59,6 +71,12 @@ public class SetupCondaBuild extends AbstractExecTask<SetupCondaBuild> {
         return task;
     }
 
+    private File bootstrapDirectory;
+    private boolean writableBootstrapDirectory;
+    private PackageSources packageSources;
+    private CondaTimings timings;
+    private boolean detailedCondaTimings;
+
     public SetupCondaBuild() {
         super(SetupCondaBuild.class);
     }
@@ -66,10 +84,16 @@ public class SetupCondaBuild extends AbstractExecTask<SetupCondaBuild> {
     public void configureAfterEvaluate(final MinicondaExtension miniconda) {
         Objects.requireNonNull(miniconda, "miniconda must not be null");
 
-        final Path condaExec = miniconda.getBootstrapDirectory().toPath().resolve("bin/conda");
+        bootstrapDirectory = miniconda.getBootstrapDirectory();
+        writableBootstrapDirectory = miniconda.isWritableBootstrapDirectory(bootstrapDirectory);
+        packageSources = PackageSources.of(miniconda);
+        Path condaExec = bootstrapDirectory.toPath().resolve("bin/conda");
         executable(condaExec);
         args("install", "--quiet", "--yes", "--override-channels");
-        args(MinicondaUtils.convertChannelsToArgs(miniconda.getChannels()));
+        if (miniconda.getDetailedCondaTimings()) {
+            args("--json");
+        }
+        args(packageSources.getChannelArgs());
 
         if (miniconda.getCondaBuildVersion() != null) {
             args("conda-build==" + miniconda.getCondaBuildVersion());
@@ -77,29 +101,97 @@ public class SetupCondaBuild extends AbstractExecTask<SetupCondaBuild> {
             args("conda-build");
         }
 
+        timings = miniconda.getTimings();
+        detailedCondaTimings = miniconda.getDetailedCondaTimings();
         LOG.info("{} configured to execute {}", getName(), getCommandLine());
 
+        doLast(new Action<Task>() {
+            @Override
+            public void execute(Task task) {
+                packageSources.updateChannelMirror();
+                try {
+                    // the worker may have imported the conda modules that were just replaced
+                    CondaWorker.stop(bootstrapDirectory);
+                } catch (IOException e) {
+                    LOG.warn("Failed to stop conda worker for {}", bootstrapDirectory, e);
+                }
+                try {
+                    // keeps the install usable from a read-only bootstrap prefix once it is copied there
+                    EnvironmentManifest.write(bootstrapDirectory.toPath(), Runtime.getRuntime().availableProcessors());
+                } catch (IOException e) {
+                    throw new GradleException("Failed to write the manifest of " + bootstrapDirectory, e);
+                }
+                packageSources.maintainPackageCache(bootstrapDirectory);
+            }
+        });
+
         getInputs().property("conda-build-version", miniconda.getCondaBuildVersion());
+        final String condaBuildVersion = miniconda.getCondaBuildVersion();
+        final boolean useCondaWorker = miniconda.getUseCondaWorker();
+        final File installedBootstrapDirectory = bootstrapDirectory;
         getOutputs().upToDateWhen(new Spec<Task>() {
             @Override
             public boolean isSatisfiedBy(Task task) {
-                try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-                    ExecAction execAction = SetupCondaBuild.this.getExecActionFactory().newExecAction();
-                    execAction.executable(condaExec);
-                    execAction.args("build", "-V"); // will error if build is not installed, otherwise just print stuff
-                    execAction.setIgnoreExitValue(true);
-                    execAction.setErrorOutput(os);
-
-                    String expectedOutput = "conda-build " + miniconda.getCondaBuildVersion();
-                    ExecResult result = execAction.execute();
-
-                    return result.getExitValue() == 0
-                            && (miniconda.getCondaBuildVersion() == null
-                            || os.toString("UTF-8").trim().equals(expectedOutput));
-                } catch (IOException e) {
-                    return false;
+                Map<String, String> installed = CondaMetadata.getInstalledPackages(installedBootstrapDirectory);
+                if (installed == null) {
+                    LOG.debug("Could not read conda metadata, asking conda for the conda-build version");
+                    return isCondaBuildInstalled(
+                            new CondaCommand(installedBootstrapDirectory, useCondaWorker), condaBuildVersion);
                 }
+                String installedVersion = installed.get(CONDA_BUILD_PACKAGE);
+                return installedVersion != null
+                        && (condaBuildVersion == null || condaBuildVersion.equals(installedVersion));
             }
         });
     }
+
+    /**
+     * Installs conda-build, recording how long conda spends solving, fetching and linking packages. Installs in a
+     * read-only bootstrap prefix are not modified; they are only used if they already contain conda-build.
+     */
+    @Override
+    @TaskAction
+    protected void exec() {
+        if (!writableBootstrapDirectory) {
+            throw new GradleException("Cannot install conda-build into the read-only Miniconda install "
+                    + bootstrapDirectory + ". Provision it with conda-build, or remove its prefix from"
+                    + " miniconda.readOnlyBootstrapPrefixes.");
+        }
+        // with --json the output is machine readable progress, only worth showing if conda fails
+        CondaOutputPhases output =
+                CondaOutputPhases.forInstall(timings, getPath(), "install", detailedCondaTimings ? null : System.out)
+                        .withProgress(getProgressLoggerFactory(), "conda install conda-build");
+        setStandardOutput(output);
+        try (CrossProcessLock ignored = packageSources.lockPackageCache()) {
+            super.exec();
+        } catch (IOException e) {
+            throw new GradleException("Failed to lock conda package cache", e);
+        } catch (RuntimeException e) {
+            if (detailedCondaTimings) {
+                LOG.error(output.getTail());
+            }
+            throw e;
+        } finally {
+            output.finish();
+        }
+    }
+
+    private boolean isCondaBuildInstalled(CondaCommand command, String condaBuildVersion) {
+        OutputTail output = new OutputTail(VERSION_OUTPUT_CAPACITY);
+        command.args("build", "-V"); // will error if build is not installed, otherwise just print stuff
+        command.setIgnoreExitValue(true);
+        command.setErrorOutput(output);
+
+        String expectedOutput = "conda-build " + condaBuildVersion;
+        int exitValue = command.execute(getExecActionFactory());
+
+        return exitValue == 0
+                && (condaBuildVersion == null
+                || output.getLastLine().equals(expectedOutput));
+    }
+
+    @Inject
+    protected ProgressLoggerFactory getProgressLoggerFactory() {
+        throw new UnsupportedOperationException();
+    }
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import com.palantir.python.miniconda.CondaEnvironment;
+import com.palantir.python.miniconda.CrossProcessLock;
+import com.palantir.python.miniconda.FileTreeUtils;
+import com.palantir.python.miniconda.MinicondaExtension;
+import com.palantir.python.miniconda.PackageSources;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.AbstractExecTask;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.TaskContainer;
+import org.gradle.process.internal.ExecAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Task which creates the named conda environments declared in {@code miniconda.environments}, or a single one of them.
+ *
+ * <p>Packages required by every environment are installed once into a shared environment, which each environment is
+ * then cloned from before its own packages are added. Cloning links the already extracted packages, so the shared
+ * packages are neither solved nor copied again. The environments themselves are independent and set up concurrently.
+ * Conda does not coordinate processes downloading and extracting into one package directory, so installing an
+ * environment's own packages holds a lock on it, while the clones, which only link packages the shared environment
+ * already extracted, run in parallel.
+ *
+ * @author agent
+ */
+@SuppressWarnings("checkstyle:DesignForExtension") // tasks need non-final getters
+public class SetupCondaEnvironments extends AbstractExecTask<SetupCondaEnvironments> {
+    private static final Logger LOG = LoggerFactory.getLogger(SetupCondaEnvironments.class);
+
+    private static final String DEFAULT_GROUP = "build";
+    private static final String SHARED_ENVIRONMENT_DIRECTORY = ".shared";
+    private static final String SPEC_MARKER = ".environment-spec";
+
+    public static SetupCondaEnvironments createTask(TaskContainer tasks, ConfigureRootCondaEnv configureRootCondaEnv) {
+        return createTask(tasks, configureRootCondaEnv, "setupCondaEnvironments", null,
+                "Installs all conda environments declared in miniconda.environments.");
+    }
+
+    public static SetupCondaEnvironments createTask(
+            TaskContainer tasks, ConfigureRootCondaEnv configureRootCondaEnv, CondaEnvironment environment) {
+        Objects.requireNonNull(environment, "environment must not be null");
+        String name = environment.getName();
+        return createTask(tasks, configureRootCondaEnv,
+                "setupCondaEnvironment" + name.substring(0, 1).toUpperCase(Locale.ROOT) + name.substring(1), name,
+                "Installs the " + name + " conda environment.");
+    }
+
+    private static SetupCondaEnvironments createTask(TaskContainer tasks, ConfigureRootCondaEnv configureRootCondaEnv,
+            String taskName, String environmentName, String description) {
+        Objects.requireNonNull(tasks, "tasks must not be null");
+        Objects.requireNonNull(configureRootCondaEnv, "configureRootCondaEnv must not be null");
+
+        SetupCondaEnvironments task = tasks.create(taskName, SetupCondaEnvironments.class);
+        task.setGroup(DEFAULT_GROUP);
+        task.setDescription(description);
+        task.environmentName = environmentName;
+        task.dependsOn(configureRootCondaEnv);
+
+        CleanTaskUtils.createCleanupTask(tasks, task);
+        return task;
+    }
+
+    private String environmentName;
+    private int maxWorkerCount;
+    private Map<File, List<String>> environments;
+    private List<String> sharedPackages;
+    private File sharedEnvironment;
+    private List<String> channels;
+    private PackageSources packageSources;
+
+    public SetupCondaEnvironments() {
+        super(SetupCondaEnvironments.class);
+    }
+
+    public void configureAfterEvaluate(final MinicondaExtension miniconda) {
+        Objects.requireNonNull(miniconda, "miniconda must not be null");
+
+        maxWorkerCount = getProject().getGradle().getStartParameter().getMaxWorkerCount();
+        sharedPackages = CondaEnvironment.getSharedPackages(miniconda.getEnvironments());
+        sharedEnvironment = new File(miniconda.getEnvironmentsDirectory(), SHARED_ENVIRONMENT_DIRECTORY);
+        channels = new ArrayList<>(miniconda.getChannels());
+        packageSources = PackageSources.of(miniconda);
+        List<CondaEnvironment> configured = environmentName == null
+                ? new ArrayList<>(miniconda.getEnvironments())
+                : Collections.singletonList(miniconda.getEnvironments().getByName(environmentName));
+        environments = new LinkedHashMap<>();
+        for (CondaEnvironment environment : configured) {
+            environments.put(environment.getDirectory(), new ArrayList<>(environment.getPackages()));
+        }
+
+        getInputs().property("channels", channels);
+        getInputs().property("sharedPackages", sharedPackages);
+        if (!sharedPackages.isEmpty()) {
+            getOutputs().dir(sharedEnvironment).withPropertyName("sharedEnvironment");
+        }
+        for (CondaEnvironment environment : configured) {
+            getInputs().property("packages-" + environment.getName(), environment.getPackages());
+            getOutputs().dir(environment.getDirectory()).withPropertyName("environment-" + environment.getName());
+        }
+        executable(miniconda.getBootstrapDirectory().toPath().resolve("bin/conda"));
+    }
+
+    @Override
+    @TaskAction
+    protected void exec() {
+        try {
+            if (!sharedPackages.isEmpty()) {
+                createEnvironment(sharedEnvironment, null, sharedPackages);
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to set up shared conda environment " + sharedEnvironment, e);
+        }
+
+        int parallelism = Math.min(environments.size(), maxWorkerCount);
+        LOG.info("Setting up {} conda environments using up to {} concurrent installs", environments.size(),
+                parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (final Map.Entry<File, List<String>> environment : environments.entrySet()) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        List<String> packages = new ArrayList<>(environment.getValue());
+                        packages.removeAll(sharedPackages);
+                        createEnvironment(environment.getKey(),
+                                sharedPackages.isEmpty() ? null : sharedEnvironment, packages);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            throw new GradleException("Failed to set up conda environments", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while setting up conda environments", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates {@code prefix} with {@code packages}, cloning {@code base} first if it is not {@code null}. Environments
+     * whose spec marker shows they were already created from the same inputs are left alone, so that environments set
+     * up by one task are not recreated by another.
+     */
+    private void createEnvironment(File prefix, File base, List<String> packages) throws IOException {
+        String spec = describe(base, packages);
+        File marker = new File(prefix, SPEC_MARKER);
+        if (marker.isFile() && new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8).equals(spec)) {
+            LOG.info("Conda environment {} is up to date", prefix);
+            return;
+        }
+        FileTreeUtils.deleteRecursively(prefix.toPath());
+
+        if (base != null) {
+            execute(Arrays.<Object>asList("create", "--yes", "--quiet",
+                    "--clone", base.getAbsolutePath(), "-p", prefix.getAbsolutePath()), false);
+        }
+        if (base == null || !packages.isEmpty()) {
+            List<Object> args = new ArrayList<>();
+            args.addAll(Arrays.asList(base == null ? "create" : "install", "--yes", "--quiet",
+                    "-p", prefix.getAbsolutePath(), "--override-channels"));
+            args.addAll(packageSources.getChannelArgs());
+            args.addAll(packages);
+            execute(args, true);
+        }
+        Files.write(marker.toPath(), spec.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void execute(List<Object> args, boolean fetchesPackages) {
+        ExecAction execAction = getExecActionFactory().newExecAction();
+        execAction.executable(getExecutable());
+        execAction.args(args);
+        LOG.info("{} executing {}", getName(), execAction.getCommandLine());
+        if (!fetchesPackages) {
+            execAction.execute();
+            return;
+        }
+        try (CrossProcessLock ignored = packageSources.lockPackageDirectory()) {
+            execAction.execute();
+        } catch (IOException e) {
+            throw new GradleException("Failed to lock conda package cache", e);
+        }
+    }
+
+    private String describe(File base, List<String> packages) {
+        StringBuilder spec = new StringBuilder();
+        for (String channel : channels) {
+            spec.append("channel=").append(channel).append('\n');
+        }
+        if (base != null) {
+            for (String pkg : sharedPackages) {
+                spec.append("shared=").append(pkg).append('\n');
+            }
+        }
+        for (String pkg : packages) {
+            spec.append("package=").append(pkg).append('\n');
+        }
+        return spec.toString();
+    }
+}
@@ -16,13 +16,40 @@
 
 package com.palantir.python.miniconda.tasks;
 
+import com.palantir.python.miniconda.CondaMetadata;
+import com.palantir.python.miniconda.CondaTimings;
+import com.palantir.python.miniconda.CrossProcessLock;
+import com.palantir.python.miniconda.EnvironmentArchive;
+import com.palantir.python.miniconda.EnvironmentCache;
+import com.palantir.python.miniconda.EnvironmentLinker;
+import com.palantir.python.miniconda.EnvironmentManifest;
+import com.palantir.python.miniconda.EnvironmentMaterialization;
+import com.palantir.python.miniconda.EnvironmentSpec;
 import com.palantir.python.miniconda.MinicondaExtension;
-import com.palantir.python.miniconda.MinicondaUtils;
+import com.palantir.python.miniconda.PackageSources;
+import com.palantir.python.miniconda.Trash;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import org.gradle.api.Action;
+import java.util.concurrent.Callable;
+import javax.inject.Inject;
+import org.gradle.api.GradleException;
 import org.gradle.api.Task;
+import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.AbstractExecTask;
+import org.gradle.api.tasks.Delete;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskContainer;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+import org.gradle.process.internal.ExecAction;
+import org.gradle.process.internal.ExecException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,10 +74,24 @@ public class SetupPython extends AbstractExecTask<SetupPython> {
         task.setDescription(DEFAULT_DESCRIPTION);
         task.dependsOn(configureRootCondaEnv);
 
-        CleanTaskUtils.createCleanupTask(tasks, task);
+        task.clean = CleanTaskUtils.createCleanupTask(tasks, task);
         return task;
     }
 
+    private Delete clean;
+    private File environment;
+    private EnvironmentSpec spec;
+    private File lockFile;
+    private PackageSources packageSources;
+    private boolean useEnvironmentCache;
+    private File environmentCacheDirectory;
+    private int environmentCacheMaxEntries;
+    private long environmentCacheMaxSizeMb;
+    private EnvironmentMaterialization environmentMaterialization;
+    private File environmentArchiveDirectory;
+    private CondaTimings timings;
+    private boolean detailedCondaTimings;
+
     public SetupPython() {
         super(SetupPython.class);
     }
@@ -58,24 +99,326 @@ public class SetupPython extends AbstractExecTask<SetupPython> {
     public void configureAfterEvaluate(final MinicondaExtension miniconda) {
         Objects.requireNonNull(miniconda, "miniconda must not be null");
 
+        environment = miniconda.getBuildEnvironmentDirectory();
+        spec = EnvironmentSpec.of(miniconda);
+        lockFile = miniconda.getUseLockFile() ? miniconda.getLockFile() : null;
+        packageSources = PackageSources.of(miniconda);
+        useEnvironmentCache = miniconda.getUseEnvironmentCache();
+        environmentCacheDirectory = miniconda.getEnvironmentCacheDirectory();
+        environmentCacheMaxEntries = miniconda.getEnvironmentCacheMaxEntries();
+        environmentCacheMaxSizeMb = miniconda.getEnvironmentCacheMaxSizeMb();
+        environmentMaterialization = miniconda.getEnvironmentMaterialization();
+        environmentArchiveDirectory = miniconda.getEnvironmentArchiveDirectory();
+        timings = miniconda.getTimings();
+        detailedCondaTimings = miniconda.getDetailedCondaTimings();
+
         getInputs().property("packages", miniconda.getPackages());
-        getOutputs().dir(miniconda.getBuildEnvironmentDirectory());
+        getInputs().property("channels", miniconda.getChannels());
+        getInputs().property("pythonVersion", miniconda.getPythonVersion());
+        getInputs().property("minicondaVersion", miniconda.getMinicondaVersion());
+        if (miniconda.getTrackEnvironmentFiles()) {
+            // installPipPackages adds files to the environment too, which must not make this task out of date
+            final File trackedEnvironment = environment;
+            getOutputs().files(new Callable<List<File>>() {
+                @Override
+                public List<File> call() throws IOException {
+                    return EnvironmentManifest.listCondaFiles(trackedEnvironment);
+                }
+            }).withPropertyName("environment");
+        } else {
+            // snapshotting every file of an environment dominates up-to-date checks, so only the manifest is tracked
+            getOutputs().file(EnvironmentManifest.getFile(environment)).withPropertyName("manifest");
+            clean.delete(environment);
+            final File manifestedEnvironment = environment;
+            getOutputs().upToDateWhen(new Spec<Task>() {
+                @Override
+                public boolean isSatisfiedBy(Task task) {
+                    return EnvironmentManifest.isCurrent(manifestedEnvironment.toPath());
+                }
+            });
+        }
+        if (lockFile != null) {
+            getInputs().files(lockFile)
+                    .withPropertyName("lockFile")
+                    .withPathSensitivity(PathSensitivity.NONE);
+        }
 
         executable(miniconda.getBootstrapDirectory().toPath().resolve("bin/conda"));
-        args("create", "--yes", "--quiet", "-p", miniconda.getBuildEnvironmentDirectory());
-        args("--override-channels");
-        args(MinicondaUtils.convertChannelsToArgs(miniconda.getChannels()));
-        args(miniconda.getPackages());
-
-        doFirst(new Action<Task>() {
-            @Override
-            public void execute(Task task) {
-                if (miniconda.getBuildEnvironmentDirectory().exists()) {
-                    getProject().delete(miniconda.getBuildEnvironmentDirectory());
-                    LOG.debug("Deleted BuildEnvironmentDir dir: {}", miniconda.getBuildEnvironmentDirectory());
+        args(createArgs(environment));
+
+        LOG.info("{} configured to execute {}", getName(), getCommandLine());
+    }
+
+    @Override
+    @TaskAction
+    protected void exec() {
+        try (CrossProcessLock ignored = packageSources.lockPackageCache()) {
+            setUpEnvironment();
+        } catch (IOException e) {
+            throw new GradleException("Failed to lock conda package cache", e);
+        }
+        try (CondaTimings.Phase timing = timings.start(getPath(), "manifest")) {
+            EnvironmentManifest.write(environment.toPath(), Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            throw new GradleException("Failed to write the manifest of conda environment " + environment, e);
+        }
+        packageSources.maintainPackageCache(environment);
+    }
+
+    private void setUpEnvironment() {
+        boolean incremental = !useEnvironmentCache && lockFile == null;
+        try {
+            if (incremental && updateEnvironment()) {
+                spec.write(environment);
+                packageSources.updateChannelMirror();
+                return;
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to update conda environment " + environment, e);
+        }
+
+        try {
+            Trash.discard(environment.toPath());
+            LOG.debug("Deleted BuildEnvironmentDir dir: {}", environment);
+        } catch (IOException e) {
+            throw new GradleException("Failed to delete conda environment " + environment, e);
+        }
+        if (unpackArchive()) {
+            return;
+        }
+        if (!useEnvironmentCache) {
+            execTimed("create");
+            try {
+                spec.write(environment);
+            } catch (IOException e) {
+                throw new GradleException("Failed to record conda environment spec in " + environment, e);
+            }
+            packageSources.updateChannelMirror();
+            return;
+        }
+
+        EnvironmentCache cache = new EnvironmentCache(environmentCacheDirectory);
+        try {
+            String key = EnvironmentCache.computeKey(spec, lockFile);
+            // held while materializing too, so that other builds do not evict the entry being linked or cloned
+            try (CrossProcessLock ignored = CrossProcessLock.acquire(cache.getLockFile(key))) {
+                populateCache(cache, key);
+                materializeFromCache(cache, key);
+            }
+            cache.prune(environmentCacheMaxEntries, environmentCacheMaxSizeMb, key);
+        } catch (IOException e) {
+            throw new GradleException("Failed to set up conda environment from cache " + cache.getRoot(), e);
+        }
+    }
+
+    /**
+     * Restores the environment from an archive written by {@link PackCondaEnvironment}, if there is one for the
+     * configured environment that can be relocated to the build environment. Returns {@code false} if the environment
+     * has to be created by conda instead.
+     */
+    private boolean unpackArchive() {
+        File archive;
+        try {
+            archive = EnvironmentArchive.getArchiveFile(
+                    environmentArchiveDirectory, EnvironmentCache.computeKey(spec, lockFile));
+            if (!archive.isFile()) {
+                return false;
+            }
+            if (!EnvironmentArchive.canUnpack(archive, environment.toPath())) {
+                LOG.info("Cannot relocate {} into the longer prefix {}, creating it instead", archive, environment);
+                return false;
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to read conda environment archive for {}, creating it instead", environment, e);
+            return false;
+        }
+
+        try (CondaTimings.Phase timing = timings.start(getPath(), "unpack")) {
+            EnvironmentArchive.unpack(archive, environment.toPath(), Runtime.getRuntime().availableProcessors());
+            spec.write(environment);
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Failed to unpack {}, creating the conda environment instead", archive, e);
+        }
+        try {
+            Trash.discard(environment.toPath());
+        } catch (IOException e) {
+            throw new GradleException("Failed to delete conda environment " + environment, e);
+        }
+        return false;
+    }
+
+    /**
+     * Turns an environment created by a previous run into the configured one by removing and installing only the
+     * packages that changed. Returns {@code false} if the environment has to be recreated instead, because it is
+     * missing or was created with a different Python, bootstrap or set of channels, or because packages are missing
+     * after the update.
+     *
+     * <p>{@code conda remove} also removes the packages depending on the removed ones, even if they are still
+     * configured, so after a removal all configured packages are installed again rather than only the added ones.
+     */
+    private boolean updateEnvironment() throws IOException {
+        EnvironmentSpec previous = EnvironmentSpec.read(environment);
+        if (!spec.canUpdateFrom(previous)) {
+            return false;
+        }
+
+        List<String> removed = spec.getRemovedPackages(previous);
+        List<String> added = spec.getAddedPackages(previous);
+        LOG.info("Updating conda environment {}: removing {}, installing {}", environment, removed, added);
+        EnvironmentSpec.clear(environment);
+        if (!removed.isEmpty()) {
+            ExecAction execAction = getExecActionFactory().newExecAction();
+            execAction.executable(getExecutable());
+            execAction.args("remove", "--yes", "--quiet", "-p", environment.getAbsolutePath());
+            execAction.args(removed);
+            try (CondaTimings.Phase timing = timings.start(getPath(), "remove")) {
+                execAction.execute();
+            } catch (ExecException e) {
+                LOG.warn("Failed to remove {} from conda environment {}, recreating it", removed, environment, e);
+                return false;
+            }
+        }
+        List<String> toInstall = removed.isEmpty() ? added : spec.getPackages();
+        if (!toInstall.isEmpty()) {
+            ExecAction execAction = getExecActionFactory().newExecAction();
+            execAction.executable(getExecutable());
+            execAction.args("install", "--yes", "--quiet", "-p", environment.getAbsolutePath(), "--override-channels");
+            execAction.args(packageSources.getChannelArgs());
+            execAction.args(toInstall);
+            CondaOutputPhases output =
+                    CondaOutputPhases.forInstall(timings, getPath(), "install", System.out)
+                            .withProgress(getProgressLoggerFactory(), "conda install into " + environment);
+            execAction.setStandardOutput(output);
+            try {
+                execAction.execute();
+            } catch (ExecException e) {
+                LOG.warn("Failed to install {} into conda environment {}, recreating it", toInstall, environment, e);
+                return false;
+            } finally {
+                output.finish();
+            }
+        }
+
+        Map<String, String> installedPackages = CondaMetadata.getInstalledPackages(environment);
+        List<String> missing = installedPackages == null
+                ? spec.getPackages()
+                : spec.getMissingPackages(installedPackages);
+        if (!missing.isEmpty()) {
+            LOG.warn("Packages {} are missing from conda environment {} after updating it, recreating it", missing,
+                    environment);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Makes sure the environment exists in the shared cache, creating it there with the configured packages if needed.
+     * Callers hold the per-entry lock, so that concurrent builds needing the same environment create it once.
+     */
+    private void populateCache(EnvironmentCache cache, String key) throws IOException {
+        File cachedEnvironment = cache.getEnvironmentDirectory(key);
+        if (cache.contains(key)) {
+            LOG.info("Reusing cached conda environment {}", cachedEnvironment);
+        } else {
+            LOG.info("Creating cached conda environment {}", cachedEnvironment);
+            cache.prepare(key);
+            ExecAction execAction = getExecActionFactory().newExecAction();
+            execAction.executable(getExecutable());
+            execAction.args(createArgs(cachedEnvironment));
+            CondaOutputPhases output = createOutput("create-cached");
+            execAction.setStandardOutput(output);
+            try {
+                execAction.execute();
+            } catch (RuntimeException e) {
+                logTail(output);
+                throw e;
+            } finally {
+                output.finish();
+            }
+            cache.commit(key);
+            packageSources.updateChannelMirror();
+        }
+        cache.touch(key);
+    }
+
+    /**
+     * Creates the build environment from the cached one, either by linking it directly or by having conda clone it,
+     * which reuses the already extracted packages instead of solving and downloading them again.
+     */
+    private void materializeFromCache(EnvironmentCache cache, String key) throws IOException {
+        Path source = cache.getEnvironmentDirectory(key).toPath();
+        Path target = environment.toPath();
+        if (environmentMaterialization == EnvironmentMaterialization.LINK) {
+            Map<String, Boolean> prefixFiles = cache.getPrefixFiles(key);
+            if (EnvironmentLinker.canRelocate(source, target, prefixFiles)) {
+                try (CondaTimings.Phase timing = timings.start(getPath(), "materialize")) {
+                    EnvironmentLinker.materialize(source, target, prefixFiles);
                 }
+                return;
             }
-        });
-        LOG.info("{} configured to execute {}", getName(), getCommandLine());
+            LOG.warn("Cannot link {} into the longer prefix {}, falling back to conda clone", source, target);
+        }
+
+        setArgs(Arrays.asList("create", "--yes", "--quiet",
+                "--clone", source.toAbsolutePath().toString(),
+                "-p", target.toAbsolutePath().toString()));
+        LOG.info("{} reconfigured to execute {}", getName(), getCommandLine());
+        setStandardOutput(System.out);
+        try (CondaTimings.Phase timing = timings.start(getPath(), "clone")) {
+            super.exec();
+        }
+    }
+
+    /**
+     * Runs the configured command, recording how long conda spends solving, fetching and linking packages.
+     */
+    private void execTimed(String phase) {
+        CondaOutputPhases output = createOutput(phase);
+        setStandardOutput(output);
+        try {
+            super.exec();
+        } catch (RuntimeException e) {
+            logTail(output);
+            throw e;
+        } finally {
+            output.finish();
+        }
+    }
+
+    private CondaOutputPhases createOutput(String phase) {
+        // with --json the output is machine readable progress, only worth showing if conda fails
+        OutputStream delegate = detailedCondaTimings ? null : System.out;
+        return CondaOutputPhases.forInstall(timings, getPath(), phase, delegate)
+                .withProgress(getProgressLoggerFactory(), "conda " + phase);
+    }
+
+    private void logTail(CondaOutputPhases output) {
+        // without --json the output has already been shown
+        if (detailedCondaTimings) {
+            LOG.error(output.getTail());
+        }
+    }
+
+    @Inject
+    protected ProgressLoggerFactory getProgressLoggerFactory() {
+        throw new UnsupportedOperationException();
+    }
+
+    private List<Object> createArgs(File prefix) {
+        List<Object> args = new ArrayList<>();
+        args.addAll(Arrays.asList("create", "--yes", "--quiet", "-p", prefix));
+        if (detailedCondaTimings) {
+            args.add("--json");
+        }
+        if (lockFile != null) {
+            // an explicit spec names exact package URLs, so conda installs them without solving
+            args.addAll(Arrays.asList("--file", lockFile));
+            return args;
+        }
+        args.add("--override-channels");
+        args.addAll(packageSources.getChannelArgs());
+        args.addAll(spec.getPackages());
+        return args;
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks;
+
+import com.palantir.python.miniconda.EnvironmentManifest;
+import com.palantir.python.miniconda.MinicondaExtension;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.TaskContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the files of the build environment against the manifest {@link SetupPython} wrote, failing if files owned by
+ * conda packages were modified since. Only runs when requested, as it reads the metadata of every file.
+ *
+ * @author agent
+ */
+@SuppressWarnings("checkstyle:DesignForExtension") // tasks need non-final getters
+public class VerifyCondaEnvironment extends DefaultTask {
+    private static final Logger LOG = LoggerFactory.getLogger(VerifyCondaEnvironment.class);
+
+    private static final String DEFAULT_GROUP = "verification";
+    private static final String DEFAULT_DESCRIPTION =
+            "Verifies that no files of the conda build environment were modified outside of conda.";
+
+    private File environment;
+
+    public static VerifyCondaEnvironment createTask(TaskContainer tasks, SetupPython setupPython) {
+        Objects.requireNonNull(tasks, "tasks must not be null");
+        Objects.requireNonNull(setupPython, "setupPython must not be null");
+
+        VerifyCondaEnvironment task = tasks.create("verifyCondaEnvironment", VerifyCondaEnvironment.class);
+        task.setGroup(DEFAULT_GROUP);
+        task.setDescription(DEFAULT_DESCRIPTION);
+        task.mustRunAfter(setupPython);
+        return task;
+    }
+
+    public void configureAfterEvaluate(final MinicondaExtension minicondaExtension) {
+        Objects.requireNonNull(minicondaExtension, "minicondaExtension must not be null");
+        environment = minicondaExtension.getBuildEnvironmentDirectory();
+    }
+
+    @TaskAction
+    public void verify() {
+        List<String> modified;
+        try {
+            modified = EnvironmentManifest.findModifiedPackages(
+                    environment.toPath(), Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            throw new GradleException("Failed to verify conda environment " + environment
+                    + ", run setupPython to recreate it", e);
+        }
+        if (!modified.isEmpty()) {
+            throw new GradleException("Files of packages " + modified + " in conda environment " + environment
+                    + " were modified since setupPython created it");
+        }
+        LOG.info("Conda environment {} matches its manifest", environment);
+    }
+}
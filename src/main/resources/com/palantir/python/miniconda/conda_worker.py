@@ -0,0 +1,112 @@
+# Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+# Runs conda commands in a long-lived interpreter on behalf of the Gradle plugin.
+#
+# Each request is one line on stdin holding the command's arguments separated by NUL characters. The response streams
+# the command's output as it is written: frames of a header line "out <length>" or "err <length>" followed by that many
+# bytes of standard output or standard error, ended by a header line "exit <exit code>". Anything written directly to
+# file descriptor 1 (e.g. by subprocesses) is redirected to stderr so it cannot corrupt the protocol.
+
+import os
+import sys
+import threading
+import traceback
+
+
+class Frames(object):
+    """A file-like object sending everything written to it as response frames of one kind."""
+
+    encoding = 'utf-8'
+
+    def __init__(self, protocol, lock, kind):
+        self.protocol = protocol
+        self.lock = lock
+        self.kind = kind
+
+    def write(self, text):
+        data = encode(text)
+        if not data:
+            return
+        with self.lock:
+            self.protocol.write(('%s %d\n' % (self.kind, len(data))).encode('ascii'))
+            self.protocol.write(data)
+            self.protocol.flush()
+
+    def writelines(self, lines):
+        for line in lines:
+            self.write(line)
+
+    def flush(self):
+        pass
+
+    def isatty(self):
+        return False
+
+
+def run(args):
+    if args and args[0] == 'build':
+        sys.argv = ['conda-build'] + args[1:]
+        from conda_build.cli.main_build import main as build_main
+        return build_main()
+    sys.argv = ['conda'] + args
+    from conda.cli.main import main as conda_main
+    return conda_main()
+
+
+def exit_code(code):
+    if code is None:
+        return 0
+    if isinstance(code, int):
+        return code
+    return 1
+
+
+def encode(text):
+    if isinstance(text, bytes):
+        return text
+    return text.encode('utf-8')
+
+
+def main():
+    protocol = os.fdopen(os.dup(1), 'wb')
+    os.dup2(2, 1)
+    # conda may write from its download threads
+    lock = threading.Lock()
+    stdout = Frames(protocol, lock, 'out')
+    stderr = Frames(protocol, lock, 'err')
+    while True:
+        line = sys.stdin.readline()
+        if not line:
+            return
+        args = line.rstrip('\n').split('\0')
+        sys.stdout = stdout
+        sys.stderr = stderr
+        try:
+            code = exit_code(run(args))
+        except SystemExit as e:
+            code = exit_code(e.code)
+        except BaseException:
+            traceback.print_exc()
+            code = 1
+        finally:
+            sys.stdout = sys.__stdout__
+            sys.stderr = sys.__stderr__
+        with lock:
+            protocol.write(('exit %d\n' % code).encode('ascii'))
+            protocol.flush()
+
+
+if __name__ == '__main__':
+    main()
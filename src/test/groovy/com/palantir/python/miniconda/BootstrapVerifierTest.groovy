@@ -0,0 +1,101 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link BootstrapVerifier}.
+ *
+ * @author agent
+ */
+class BootstrapVerifierTest extends Specification {
+    private File bootstrapDirectory = Files.createTempDirectory("miniconda").toFile()
+
+    def setup() {
+        new File(bootstrapDirectory, 'conda-meta').mkdirs()
+        new File(bootstrapDirectory, 'bin').mkdirs()
+        new File(bootstrapDirectory, 'bin/conda').text = 'conda'
+        new File(bootstrapDirectory, 'conda-meta/conda-4.3.11-py27_0.json').text = '{"files": ["bin/conda"]}'
+    }
+
+    def cleanup() {
+        bootstrapDirectory.deleteDir()
+    }
+
+    def 'complete installs matching their manifest are verified'() {
+        given:
+        EnvironmentManifest.write(bootstrapDirectory.toPath(), 2)
+        new File(bootstrapDirectory, '.miniconda-installed').createNewFile()
+
+        expect:
+        BootstrapVerifier.isVerified(bootstrapDirectory)
+    }
+
+    def 'incomplete installs and installs without a manifest are not verified'() {
+        when:
+        new File(bootstrapDirectory, '.miniconda-installed').createNewFile()
+
+        then:
+        !BootstrapVerifier.isVerified(bootstrapDirectory)
+
+        when:
+        new File(bootstrapDirectory, '.miniconda-installed').delete()
+        EnvironmentManifest.write(bootstrapDirectory.toPath(), 2)
+
+        then:
+        !BootstrapVerifier.isVerified(bootstrapDirectory)
+    }
+
+    def 'installs with modified files are not verified'() {
+        given:
+        EnvironmentManifest.write(bootstrapDirectory.toPath(), 2)
+        new File(bootstrapDirectory, '.miniconda-installed').createNewFile()
+        new File(bootstrapDirectory, 'bin/conda').text = 'modified conda'
+
+        expect:
+        !BootstrapVerifier.isVerified(bootstrapDirectory)
+    }
+
+    def 'failed verifications are cached until the manifest changes'() {
+        given:
+        File conda = new File(bootstrapDirectory, 'bin/conda')
+        long lastModified = conda.lastModified()
+        File manifest = EnvironmentManifest.getFile(bootstrapDirectory)
+        EnvironmentManifest.write(bootstrapDirectory.toPath(), 2)
+        new File(bootstrapDirectory, '.miniconda-installed').createNewFile()
+
+        when:
+        conda.setLastModified(lastModified - 10000)
+
+        then:
+        !BootstrapVerifier.isVerified(bootstrapDirectory)
+
+        when:
+        conda.setLastModified(lastModified)
+
+        then:
+        !BootstrapVerifier.isVerified(bootstrapDirectory)
+
+        when:
+        manifest.setLastModified(manifest.lastModified() + 10000)
+
+        then:
+        BootstrapVerifier.isVerified(bootstrapDirectory)
+    }
+}
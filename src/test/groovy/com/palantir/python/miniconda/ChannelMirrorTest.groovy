@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link ChannelMirror}.
+ *
+ * @author agent
+ */
+class ChannelMirrorTest extends Specification {
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+    private File pkgs = new File(tempDirectory, 'pkgs')
+    private ChannelMirror mirror = new ChannelMirror(new File(tempDirectory, 'mirror'), 'linux-64')
+
+    def setup() {
+        new File(pkgs, 'x-1.0-0/info').mkdirs()
+        new File(pkgs, 'x-1.0-0.tar.bz2').text = 'tarball'
+        new File(pkgs, 'x-1.0-0/info/index.json').text = '{\n  "name": "x",\n  "subdir": "linux-64"\n}\n'
+    }
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'mirrors extracted packages and indexes them'() {
+        expect:
+        !mirror.exists()
+
+        when:
+        int added = mirror.update(pkgs)
+
+        then:
+        added == 1
+        mirror.exists()
+        new File(mirror.root, 'linux-64/x-1.0-0.tar.bz2').text == 'tarball'
+        String repodata = new File(mirror.root, 'linux-64/repodata.json').text
+        repodata.contains('"x-1.0-0.tar.bz2": ')
+        repodata.contains('"md5": "')
+        new File(mirror.root, 'noarch/repodata.json').isFile()
+    }
+
+    def 'skips packages that are already mirrored or not extracted'() {
+        when:
+        mirror.update(pkgs)
+        new File(pkgs, 'y-2.0-0.tar.bz2').text = 'not extracted'
+
+        then:
+        mirror.update(pkgs) == 0
+    }
+}
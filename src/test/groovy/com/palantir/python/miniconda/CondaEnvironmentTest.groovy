@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link CondaEnvironment} and the tasks created for it.
+ *
+ * @author agent
+ */
+class CondaEnvironmentTest extends Specification {
+    private Project project = ProjectBuilder.builder().build()
+
+    def setup() {
+        project.pluginManager.apply(MinicondaPlugin)
+        project.miniconda {
+            environments {
+                test {
+                    packages = ['python', 'pytest', 'numpy']
+                }
+                docs {
+                    packages = ['sphinx', 'numpy', 'python']
+                }
+            }
+        }
+    }
+
+    def 'packages common to all environments are shared'() {
+        expect:
+        CondaEnvironment.getSharedPackages(project.miniconda.environments) == ['python', 'numpy']
+    }
+
+    def 'a single environment shares nothing'() {
+        expect:
+        CondaEnvironment.getSharedPackages([project.miniconda.environments.test]) == []
+    }
+
+    def 'each environment gets a setup task'() {
+        expect:
+        project.tasks.findByName('setupCondaEnvironmentTest') != null
+        project.tasks.findByName('setupCondaEnvironmentDocs') != null
+        project.tasks.findByName('setupCondaEnvironments') != null
+        project.miniconda.environments.docs.directory == project.file('build/conda-environments/docs')
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link CondaMetadata}.
+ *
+ * @author agent
+ */
+class CondaMetadataTest extends Specification {
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'reads installed packages from conda-meta'() {
+        when:
+        File condaMeta = new File(tempDirectory, 'conda-meta')
+        condaMeta.mkdirs()
+        new File(condaMeta, 'conda-build-2.1.9-py27_0.json').text = '{}'
+        new File(condaMeta, 'python-2.7.13-0.json').text = '{}'
+        new File(condaMeta, 'history').text = ''
+
+        then:
+        CondaMetadata.getInstalledPackages(tempDirectory) == ['conda-build': '2.1.9', 'python': '2.7.13']
+    }
+
+    def 'notices packages installed within the modification time granularity'() {
+        given:
+        File condaMeta = new File(tempDirectory, 'conda-meta')
+        condaMeta.mkdirs()
+        new File(condaMeta, 'python-2.7.13-0.json').text = '{}'
+        condaMeta.setLastModified(1000L)
+        CondaMetadata.getInstalledPackages(tempDirectory)
+
+        when:
+        new File(condaMeta, 'conda-build-2.1.9-py27_0.json').text = '{}'
+        condaMeta.setLastModified(1000L)
+
+        then:
+        CondaMetadata.getInstalledPackages(tempDirectory) == ['conda-build': '2.1.9', 'python': '2.7.13']
+    }
+
+    def 'returns null without conda-meta'() {
+        expect:
+        CondaMetadata.getInstalledPackages(tempDirectory) == null
+    }
+}
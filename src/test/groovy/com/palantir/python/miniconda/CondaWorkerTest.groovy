@@ -0,0 +1,123 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import spock.lang.Requires
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link CondaWorker} and its protocol, against a stand-in for conda.
+ *
+ * @author agent
+ */
+@Requires({ FakeCondaInstall.isSupported() })
+class CondaWorkerTest extends Specification {
+    private FakeCondaInstall install = new FakeCondaInstall()
+    private ByteArrayOutputStream standardOutput = new ByteArrayOutputStream()
+    private ByteArrayOutputStream errorOutput = new ByteArrayOutputStream()
+
+    def cleanup() {
+        CondaWorker.stopAll()
+        install.delete()
+    }
+
+    def 'passes arguments and output through the worker'() {
+        when:
+        int exitValue = run('echo', 'with space', 'würde')
+
+        then:
+        exitValue == 0
+        standardOutput.toString('UTF-8') == 'with space würde\n'
+        errorOutput.size() == 0
+    }
+
+    def 'reports non-zero exit values with their error output'() {
+        expect:
+        run('fail', '3') == 3
+        errorOutput.toString('UTF-8') == 'failed with 3\n'
+        run('exit', '2') == 2
+    }
+
+    def 'streams output larger than a single frame'() {
+        when:
+        int exitValue = run('lines', '50000')
+        List<String> lines = standardOutput.toString('UTF-8').readLines()
+
+        then:
+        exitValue == 0
+        lines.size() == 50000
+        lines.last() == 'line 49999'
+    }
+
+    def 'runs consecutive commands in one worker'() {
+        given:
+        CondaWorker worker = CondaWorker.get(install.bootstrapDirectory)
+
+        when:
+        run('echo', 'first')
+        run('echo', 'second')
+
+        then:
+        CondaWorker.get(install.bootstrapDirectory).is(worker)
+        standardOutput.toString('UTF-8') == 'first\nsecond\n'
+    }
+
+    def 'rejects arguments that would break the protocol'() {
+        when:
+        run('echo', 'two\nlines')
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def 'does not restart a worker that died until all workers are stopped'() {
+        when:
+        run('crash')
+
+        then:
+        thrown(IOException)
+        standardOutput.toString('UTF-8') == 'partial\n'
+
+        when:
+        CondaWorker.get(install.bootstrapDirectory)
+
+        then:
+        thrown(IOException)
+
+        when:
+        CondaWorker.stopAll()
+
+        then:
+        run('echo', 'restarted') == 0
+    }
+
+    def 'starts a new worker after stopping one'() {
+        given:
+        CondaWorker worker = CondaWorker.get(install.bootstrapDirectory)
+
+        when:
+        CondaWorker.stop(install.bootstrapDirectory)
+
+        then:
+        !CondaWorker.get(install.bootstrapDirectory).is(worker)
+        run('echo', 'again') == 0
+    }
+
+    private int run(String... args) {
+        return CondaWorker.get(install.bootstrapDirectory).run(args as List, standardOutput, errorOutput)
+    }
+}
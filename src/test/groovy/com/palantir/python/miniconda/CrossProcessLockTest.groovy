@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link CrossProcessLock}.
+ *
+ * @author agent
+ */
+class CrossProcessLockTest extends Specification {
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+    private File lockFile = new File(tempDirectory, 'nested/install.lock')
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'excludes other threads until released'() {
+        given:
+        CrossProcessLock lock = CrossProcessLock.acquire(lockFile)
+        AtomicBoolean acquired = new AtomicBoolean()
+        CountDownLatch done = new CountDownLatch(1)
+        Thread waiter = Thread.start {
+            CrossProcessLock.acquire(lockFile).close()
+            acquired.set(true)
+            done.countDown()
+        }
+
+        expect:
+        !done.await(200, TimeUnit.MILLISECONDS)
+        !acquired.get()
+
+        when:
+        lock.close()
+
+        then:
+        done.await(10, TimeUnit.SECONDS)
+        acquired.get()
+
+        cleanup:
+        waiter.join()
+    }
+
+    def 'try acquire fails while the lock is held'() {
+        given:
+        CrossProcessLock lock = CrossProcessLock.acquire(lockFile)
+        CrossProcessLock other = null
+        CrossProcessLock reacquired = null
+        Thread.start { other = CrossProcessLock.tryAcquire(lockFile) }.join()
+
+        expect:
+        lockFile.isFile()
+        other == null
+        CrossProcessLock.tryAcquire(lockFile) == null
+
+        when:
+        lock.close()
+        reacquired = CrossProcessLock.tryAcquire(lockFile)
+
+        then:
+        reacquired != null
+
+        cleanup:
+        reacquired?.close()
+    }
+}
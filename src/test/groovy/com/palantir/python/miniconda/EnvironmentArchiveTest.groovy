@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link EnvironmentArchive}.
+ *
+ * @author agent
+ */
+class EnvironmentArchiveTest extends Specification {
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+    private Path source = new File(tempDirectory, 'a/long/source/env').toPath()
+    private File archive = EnvironmentArchive.getArchiveFile(new File(tempDirectory, 'archives'), 'key')
+
+    def setup() {
+        Files.createDirectories(source.resolve('bin'))
+        Files.createDirectories(source.resolve('lib/empty'))
+        source.resolve('bin/script').toFile().text = "#!${source}/bin/python\n"
+        source.resolve('bin/script').toFile().setExecutable(true)
+        Files.write(source.resolve('lib/native.so'), "abc\u0000${source}/lib\u0000xyz".getBytes(StandardCharsets.UTF_8))
+        byte[] large = new byte[3 * 1024 * 1024 + 7]
+        new Random(0).nextBytes(large)
+        Files.write(source.resolve('lib/large'), large)
+        Files.createSymbolicLink(source.resolve('bin/python'), Paths.get('python2.7'))
+        Files.createSymbolicLink(source.resolve('bin/absolute'), source.resolve('bin/script'))
+        Files.createSymbolicLink(source.resolve('bin/prefix'), source)
+        Files.createSymbolicLink(source.resolve('bin/sibling'), Paths.get("${source}-other/bin/python"))
+    }
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'unpacked environments are relocated to the new prefix'() {
+        given:
+        Path target = new File(tempDirectory, 'b/env').toPath()
+
+        when:
+        EnvironmentArchive.pack(source, archive, 2)
+        EnvironmentArchive.unpack(archive, target, 2)
+
+        then:
+        archive.name.startsWith('key-')
+        target.resolve('bin/script').toFile().text == "#!${target}/bin/python\n"
+        Files.isExecutable(target.resolve('bin/script'))
+        Files.size(target.resolve('lib/native.so')) == Files.size(source.resolve('lib/native.so'))
+        new String(Files.readAllBytes(target.resolve('lib/native.so')), StandardCharsets.UTF_8)
+                .startsWith("abc\u0000${target}/lib\u0000")
+        Files.readAllBytes(target.resolve('lib/large')) == Files.readAllBytes(source.resolve('lib/large'))
+        Files.readSymbolicLink(target.resolve('bin/python')) == Paths.get('python2.7')
+        Files.readSymbolicLink(target.resolve('bin/absolute')) == target.resolve('bin/script')
+        Files.readSymbolicLink(target.resolve('bin/prefix')) == target
+        Files.readSymbolicLink(target.resolve('bin/sibling')) == Paths.get("${source}-other/bin/python")
+        Files.isDirectory(target.resolve('lib/empty'))
+    }
+
+    def 'environments with binary prefix files cannot be unpacked at longer prefixes'() {
+        when:
+        EnvironmentArchive.pack(source, archive, 2)
+
+        then:
+        EnvironmentArchive.canUnpack(archive, new File(tempDirectory, 'b/env').toPath())
+        !EnvironmentArchive.canUnpack(archive, new File(tempDirectory, 'a/much/longer/target/env').toPath())
+    }
+}
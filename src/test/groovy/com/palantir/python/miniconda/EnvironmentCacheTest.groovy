@@ -0,0 +1,101 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link EnvironmentCache}.
+ *
+ * @author agent
+ */
+class EnvironmentCacheTest extends Specification {
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'key ignores package order but not channel order'() {
+        when:
+        Project project = ProjectBuilder.builder().build()
+        def first = new MinicondaExtension(project)
+        first.minicondaVersion = '3.18.3'
+        first.packages = ['python', 'numpy']
+        first.channels = ['a', 'b']
+        def second = new MinicondaExtension(project)
+        second.minicondaVersion = '3.18.3'
+        second.packages = ['numpy', 'python']
+        second.channels = ['a', 'b']
+        def third = new MinicondaExtension(project)
+        third.minicondaVersion = '3.18.3'
+        third.packages = ['numpy', 'python']
+        third.channels = ['b', 'a']
+
+        then:
+        EnvironmentCache.computeKey(first) == EnvironmentCache.computeKey(second)
+        EnvironmentCache.computeKey(first) != EnvironmentCache.computeKey(third)
+    }
+
+    def 'prune evicts least recently used entries'() {
+        when:
+        EnvironmentCache cache = new EnvironmentCache(tempDirectory)
+        ['a', 'b', 'c'].eachWithIndex { key, index ->
+            cache.prepare(key)
+            cache.getEnvironmentDirectory(key).mkdirs()
+            cache.commit(key)
+            new File(tempDirectory, "${key}/.last-used").setLastModified(1000L * (index + 1))
+        }
+        int evicted = cache.prune(1, 0L, null)
+
+        then:
+        evicted == 2
+        !cache.contains('a')
+        !cache.contains('b')
+        cache.contains('c')
+        !cache.getLockFile('a').exists()
+        !cache.getLockFile('b').exists()
+    }
+
+    def 'prune skips entries whose lock is held'() {
+        given:
+        EnvironmentCache cache = new EnvironmentCache(tempDirectory)
+        ['a', 'b'].eachWithIndex { key, index ->
+            cache.prepare(key)
+            cache.getEnvironmentDirectory(key).mkdirs()
+            cache.commit(key)
+            new File(tempDirectory, "${key}/.last-used").setLastModified(1000L * (index + 1))
+        }
+
+        when:
+        int evicted
+        CrossProcessLock lock = CrossProcessLock.acquire(cache.getLockFile('a'))
+        try {
+            evicted = cache.prune(1, 0L, null)
+        } finally {
+            lock.close()
+        }
+
+        then:
+        evicted == 0
+        cache.contains('a')
+        cache.contains('b')
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link EnvironmentLinker}.
+ *
+ * @author agent
+ */
+class EnvironmentLinkerTest extends Specification {
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'binary replacement keeps the file length'() {
+        when:
+        byte[] content = "x/old/prefix/lib\u0000y".getBytes(StandardCharsets.UTF_8)
+        byte[] replaced = EnvironmentLinker.replaceBinary(
+                content, '/old/prefix'.getBytes(StandardCharsets.UTF_8), '/new'.getBytes(StandardCharsets.UTF_8))
+
+        then:
+        replaced.length == content.length
+        new String(replaced, StandardCharsets.UTF_8).startsWith("x/new/lib\u0000")
+        replaced[replaced.length - 1] == ('y' as char) as byte
+    }
+
+    def 'materialize links plain files and rewrites prefix files'() {
+        when:
+        Path source = new File(tempDirectory, 'cache/env').toPath()
+        Path target = new File(tempDirectory, 'project/env').toPath()
+        Files.createDirectories(source.resolve('bin'))
+        source.resolve('bin/python').toFile().text = 'binary'
+        source.resolve('bin/pip').toFile().text = "#!${source.toAbsolutePath()}/bin/python\n"
+
+        Map<String, Boolean> prefixFiles = EnvironmentLinker.findPrefixFiles(source)
+        EnvironmentLinker.materialize(source, target, prefixFiles)
+
+        then:
+        prefixFiles == ['bin/pip': false]
+        target.resolve('bin/pip').toFile().text == "#!${target.toAbsolutePath()}/bin/python\n"
+        Files.isSameFile(source.resolve('bin/python'), target.resolve('bin/python'))
+    }
+
+    def 'materialize rewrites symlinks into the prefix but not into sibling directories'() {
+        when:
+        Path source = new File(tempDirectory, 'cache/env').toPath().toAbsolutePath()
+        Path target = new File(tempDirectory, 'project/env').toPath().toAbsolutePath()
+        Files.createDirectories(source.resolve('bin'))
+        source.resolve('bin/python').toFile().text = 'binary'
+        Files.createSymbolicLink(source.resolve('bin/absolute'), source.resolve('bin/python'))
+        Files.createSymbolicLink(source.resolve('bin/prefix'), source)
+        Files.createSymbolicLink(source.resolve('bin/sibling'), Paths.get("${source}-other/lib"))
+
+        EnvironmentLinker.materialize(source, target, EnvironmentLinker.findPrefixFiles(source))
+
+        then:
+        Files.readSymbolicLink(target.resolve('bin/absolute')) == target.resolve('bin/python')
+        Files.readSymbolicLink(target.resolve('bin/prefix')) == target
+        Files.readSymbolicLink(target.resolve('bin/sibling')) == Paths.get("${source}-other/lib")
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import java.nio.file.Path
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link EnvironmentManifest}.
+ *
+ * @author agent
+ */
+class EnvironmentManifestTest extends Specification {
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+    private Path environment = tempDirectory.toPath()
+
+    def setup() {
+        new File(tempDirectory, 'conda-meta').mkdirs()
+        new File(tempDirectory, 'bin').mkdirs()
+        new File(tempDirectory, 'lib').mkdirs()
+        new File(tempDirectory, 'bin/python').text = 'python'
+        new File(tempDirectory, 'lib/libz.so').text = 'zlib'
+        new File(tempDirectory, 'conda-meta/python-2.7.13-0.json').text =
+                '{"name": "python", "files": ["bin/python"], "version": "2.7.13"}'
+        new File(tempDirectory, 'conda-meta/zlib-1.2.8-3.json').text =
+                '{"files": [\n  "lib/libz.so",\n  "lib/libz.so.1"\n], "name": "zlib"}'
+    }
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'reads the files of a package'() {
+        expect:
+        EnvironmentManifest.readPackageFiles(new File(tempDirectory, 'conda-meta/zlib-1.2.8-3.json')) ==
+                ['lib/libz.so', 'lib/libz.so.1']
+    }
+
+    def 'is current until packages are linked or unlinked'() {
+        expect:
+        !EnvironmentManifest.isCurrent(environment)
+
+        when:
+        EnvironmentManifest.write(environment, 2)
+
+        then:
+        EnvironmentManifest.isCurrent(environment)
+        EnvironmentManifest.findModifiedPackages(environment, 2).isEmpty()
+
+        when:
+        new File(tempDirectory, 'conda-meta/six-1.10.0-py27_0.json').text = '{"files": []}'
+
+        then:
+        !EnvironmentManifest.isCurrent(environment)
+        EnvironmentManifest.findModifiedPackages(environment, 2) == ['six-1.10.0-py27_0']
+    }
+
+    def 'detects modified and added package files'() {
+        given:
+        EnvironmentManifest.write(environment, 2)
+
+        when:
+        new File(tempDirectory, 'bin/python').text = 'tampered python'
+        new File(tempDirectory, 'lib/libz.so.1').text = 'zlib'
+
+        then:
+        EnvironmentManifest.isCurrent(environment)
+        EnvironmentManifest.findModifiedPackages(environment, 2) == ['python-2.7.13-0', 'zlib-1.2.8-3']
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link EnvironmentSpec}.
+ *
+ * @author agent
+ */
+class EnvironmentSpecTest extends Specification {
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+    private Project project = ProjectBuilder.builder().build()
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'computes the package delta from the recorded spec'() {
+        when:
+        spec(['python=2.7', 'numpy=1.11', 'pandas'], ['a']).write(tempDirectory)
+        EnvironmentSpec previous = EnvironmentSpec.read(tempDirectory)
+        EnvironmentSpec current = spec(['python=2.7', 'numpy=1.12', 'scipy'], ['a'])
+
+        then:
+        current.canUpdateFrom(previous)
+        current.getAddedPackages(previous) == ['numpy=1.12', 'scipy']
+        current.getRemovedPackages(previous) == ['pandas']
+    }
+
+    def 'requires a recreate when channels or python change'() {
+        when:
+        EnvironmentSpec previous = spec(['python=2.7', 'numpy'], ['a'])
+
+        then:
+        !spec(['python=2.7', 'numpy'], ['b']).canUpdateFrom(previous)
+        !spec(['python=3.5', 'numpy'], ['a']).canUpdateFrom(previous)
+        !spec(['python=2.7', 'numpy'], ['a']).canUpdateFrom(null)
+    }
+
+    def 'reads no spec from an environment without one'() {
+        expect:
+        EnvironmentSpec.read(tempDirectory) == null
+    }
+
+    def 'extracts package names from specs'() {
+        expect:
+        EnvironmentSpec.getPackageName(spec) == name
+
+        where:
+        spec                 | name
+        'numpy'              | 'numpy'
+        'numpy=1.11'         | 'numpy'
+        'numpy >=1.11'       | 'numpy'
+        'scikit-learn!=0.18' | 'scikit-learn'
+    }
+
+    def 'finds configured packages missing from an environment'() {
+        expect:
+        spec(['python=2.7', 'numpy=1.11', 'pandas'], ['a']).getMissingPackages(['python': '2.7.13', 'numpy': '1.11.3'])
+                == ['pandas']
+        spec(['python=2.7', 'numpy'], ['a']).getMissingPackages(['python': '2.7.13', 'numpy': '1.11.3']).isEmpty()
+    }
+
+    private EnvironmentSpec spec(List<String> packages, List<String> channels) {
+        MinicondaExtension miniconda = new MinicondaExtension(project)
+        miniconda.minicondaVersion = '3.18.3'
+        miniconda.packages = packages
+        miniconda.channels = channels
+        return EnvironmentSpec.of(miniconda)
+    }
+}
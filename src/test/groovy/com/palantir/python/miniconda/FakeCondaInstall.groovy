@@ -0,0 +1,78 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+
+/**
+ * A bootstrap directory whose {@code bin/python} is the system Python with a stand-in {@code conda} module, for tests
+ * of the conda worker that do not need a Miniconda install.
+ *
+ * @author agent
+ */
+class FakeCondaInstall {
+    private static final String CONDA_MAIN = '''\
+import os
+import sys
+
+
+def main():
+    command = sys.argv[1]
+    if command == 'echo':
+        sys.stdout.write(' '.join(sys.argv[2:]) + '\\n')
+    elif command == 'fail':
+        sys.stderr.write('failed with %s\\n' % sys.argv[2])
+        return int(sys.argv[2])
+    elif command == 'exit':
+        sys.exit(int(sys.argv[2]))
+    elif command == 'lines':
+        for i in range(int(sys.argv[2])):
+            sys.stdout.write('line %d\\n' % i)
+    elif command == 'crash':
+        sys.stdout.write('partial\\n')
+        sys.stdout.flush()
+        os._exit(3)
+'''
+
+    final File root
+    final File bootstrapDirectory
+
+    FakeCondaInstall() {
+        root = Files.createTempDirectory('fake-conda').toFile()
+        bootstrapDirectory = new File(root, 'bootstrap')
+        File modules = new File(root, 'modules')
+        new File(modules, 'conda/cli').mkdirs()
+        new File(modules, 'conda/__init__.py').text = ''
+        new File(modules, 'conda/cli/__init__.py').text = ''
+        new File(modules, 'conda/cli/main.py').text = CONDA_MAIN
+        File python = new File(bootstrapDirectory, 'bin/python')
+        python.parentFile.mkdirs()
+        python.text = "#!/bin/sh\nPYTHONPATH='${modules.absolutePath}' exec python3 \"\$@\"\n"
+        python.setExecutable(true)
+    }
+
+    static boolean isSupported() {
+        return File.separator == '/' && System.getenv('PATH').split(File.pathSeparator).any {
+            new File(it, 'python3').canExecute()
+        }
+    }
+
+    void delete() {
+        CondaWorker.stop(bootstrapDirectory)
+        root.deleteDir()
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpHandler
+import com.sun.net.httpserver.HttpServer
+import java.nio.file.Files
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicInteger
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link InstallerDownloader} against a local HTTP server supporting range requests.
+ *
+ * @author agent
+ */
+class InstallerDownloaderTest extends Specification {
+    private static final int SIZE = 3 * 1024 * 1024 + 17
+
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+    private File destination = new File(tempDirectory, 'installers/Miniconda2-4.3.11-Linux-x86_64.sh')
+    private byte[] installer = new byte[SIZE]
+    private AtomicInteger rangeRequests = new AtomicInteger()
+    private HttpServer server
+
+    def setup() {
+        new Random(42).nextBytes(installer)
+        server = HttpServer.create(new InetSocketAddress('127.0.0.1', 0), 0)
+        server.createContext('/miniconda/', new HttpHandler() {
+            @Override
+            void handle(HttpExchange exchange) {
+                serve(exchange)
+            }
+        })
+        server.start()
+    }
+
+    def cleanup() {
+        server.stop(0)
+        tempDirectory.deleteDir()
+    }
+
+    def 'downloads in parallel ranges and verifies the checksum'() {
+        when:
+        downloader(sha256(installer), 4).download()
+
+        then:
+        destination.bytes == installer
+        rangeRequests.get() == 3
+        !new File(destination.parentFile, destination.name + '.part').exists()
+    }
+
+    def 'resumes a partially downloaded range'() {
+        when:
+        File part = new File(destination.parentFile, "${destination.name}.${SIZE}.part0")
+        part.parentFile.mkdirs()
+        part.bytes = Arrays.copyOfRange(installer, 0, 1000)
+        downloader(null, 1).download()
+
+        then:
+        destination.bytes == installer
+    }
+
+    def 'rejects a download with the wrong checksum'() {
+        when:
+        downloader('0' * 64, 2).download()
+
+        then:
+        thrown(IOException)
+        !destination.exists()
+    }
+
+    def 'reuses a cached installer'() {
+        when:
+        downloader(sha256(installer), 2).download()
+        rangeRequests.set(0)
+        downloader(sha256(installer), 2).download()
+
+        then:
+        rangeRequests.get() == 0
+    }
+
+    private InstallerDownloader downloader(String sha256, int connections) {
+        URL url = new URL("http://127.0.0.1:${server.address.port}/miniconda/${destination.name}")
+        return new InstallerDownloader(url, destination, sha256, connections)
+    }
+
+    private void serve(HttpExchange exchange) {
+        exchange.responseHeaders.add('Accept-Ranges', 'bytes')
+        String range = exchange.requestHeaders.getFirst('Range')
+        int start = 0
+        int end = SIZE - 1
+        int status = 200
+        if (range != null) {
+            rangeRequests.incrementAndGet()
+            String[] bounds = range.substring('bytes='.length()).split('-')
+            start = bounds[0] as int
+            end = bounds[1] as int
+            status = 206
+            exchange.responseHeaders.add('Content-Range', "bytes ${start}-${end}/${SIZE}")
+        }
+        if (exchange.requestMethod == 'HEAD') {
+            exchange.responseHeaders.add('Content-Length', "${SIZE}")
+            exchange.sendResponseHeaders(status, -1)
+        } else {
+            exchange.sendResponseHeaders(status, end - start + 1)
+            exchange.responseBody.write(installer, start, end - start + 1)
+        }
+        exchange.close()
+    }
+
+    private static String sha256(byte[] bytes) {
+        return MessageDigest.getInstance('SHA-256').digest(bytes).encodeHex().toString()
+    }
+}
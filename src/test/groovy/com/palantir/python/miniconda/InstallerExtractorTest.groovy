@@ -0,0 +1,193 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import java.nio.file.Paths
+import java.security.MessageDigest
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link InstallerExtractor}.
+ *
+ * @author agent
+ */
+class InstallerExtractorTest extends Specification {
+    private static final String HEADER = '''#!/bin/bash
+THIS_PATH="$0"
+while getopts "bp:" x; do case "$x" in p) PREFIX="$OPTARG";; esac; done
+if [[ -e $PREFIX ]]; then echo "ERROR: File or directory already exists: $PREFIX"; exit 1; fi
+mkdir -p $PREFIX
+wc -c "$THIS_PATH" | grep @SIZE@ >/dev/null
+if (( $? )); then
+    echo "ERROR: size of $THIS_PATH should be @SIZE@ bytes" >&2
+    exit 1
+fi
+MD5=$(tail -n +@LINE@ "$THIS_PATH" | md5sum -)
+if ! echo $MD5 | grep @MD5@ >/dev/null; then
+    echo "ERROR: md5sum mismatch of tar archive" >&2
+    exit 1
+fi
+cd "$PREFIX"
+if ! tail -n +@LINE@ "$THIS_PATH" | tar xf -; then
+    echo "ERROR: could not extract tar starting at line @LINE@" >&2
+    exit 1
+fi
+PRECONDA="$PREFIX/preconda.tar.bz2"
+bunzip2 -c $PRECONDA | tar -xf - --no-same-owner || exit 1
+rm -f $PRECONDA
+extract_dist()
+{
+    DIST=$PREFIX/pkgs/$1
+    mkdir -p $DIST
+    tar -xjf ${DIST}.tar.bz2 -C $DIST --no-same-owner || exit 1
+    rm -f ${DIST}.tar.bz2
+}
+extract_dist six-1.10.0-py27_0
+echo linked > "$PREFIX/linked"
+exit 0
+@@END_HEADER@@
+'''
+
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+    private File installer = new File(tempDirectory, 'Miniconda2-latest-Linux-x86_64.sh')
+
+    def setup() {
+        File payload = new File(tempDirectory, 'payload')
+        File six = new File(tempDirectory, 'six')
+        File preconda = new File(tempDirectory, 'preconda')
+        new File(six, 'lib').mkdirs()
+        new File(six, 'lib/six.py').text = 'six'
+        new File(preconda, 'pkgs').mkdirs()
+        new File(preconda, 'pkgs/urls').text = 'six'
+        new File(payload, 'pkgs').mkdirs()
+        run(six, 'tar', '-cjf', new File(payload, 'pkgs/six-1.10.0-py27_0.tar.bz2').path, '.')
+        run(preconda, 'tar', '-cjf', new File(payload, 'preconda.tar.bz2').path, '.')
+        File tar = new File(tempDirectory, 'payload.tar')
+        run(payload, 'tar', '-cf', tar.path, '.')
+        String header = HEADER.replace('@LINE@', String.valueOf(HEADER.readLines().size() + 1))
+                .replace('@MD5@', MessageDigest.getInstance('MD5').digest(tar.bytes).encodeHex().toString())
+        long size = 0
+        while (header.replace('@SIZE@', String.valueOf(size)).bytes.length + tar.length() != size) {
+            size = header.replace('@SIZE@', String.valueOf(size)).bytes.length + tar.length()
+        }
+        installer.bytes = header.replace('@SIZE@', String.valueOf(size)).bytes
+        installer.append(tar.bytes)
+    }
+
+    def 'the installer checks itself and installs as is'() {
+        given:
+        File prefix = new File(tempDirectory, 'prefix')
+
+        when:
+        run(tempDirectory, 'bash', installer.path, '-b', '-p', prefix.path)
+
+        then:
+        new File(prefix, 'pkgs/six-1.10.0-py27_0/lib/six.py').text == 'six'
+        new File(prefix, 'linked').exists()
+    }
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'installs from the staged payload'() {
+        given:
+        File staging = new File(tempDirectory, 'staging')
+        File script = new File(tempDirectory, 'install.sh')
+        File prefix = new File(tempDirectory, 'prefix')
+        InstallerExtractor extractor = InstallerExtractor.read(installer)
+
+        when:
+        extractor.extractPayload(staging, 2)
+
+        then:
+        new File(staging, 'pkgs/six-1.10.0-py27_0/lib/six.py').text == 'six'
+        !new File(staging, 'pkgs/six-1.10.0-py27_0.tar.bz2').exists()
+        new File(staging, 'pkgs/urls').text == 'six'
+
+        when:
+        extractor.writeInstallScript(staging, script)
+        run(tempDirectory, 'bash', script.path, '-b', '-p', prefix.path)
+
+        then:
+        !script.text.contains('tail -n')
+        !script.text.contains('wc -c')
+        !extractor.compilesBytecode()
+        new File(prefix, 'pkgs/six-1.10.0-py27_0/lib/six.py').text == 'six'
+        new File(prefix, 'pkgs/urls').text == 'six'
+        new File(prefix, 'linked').exists()
+        staging.list() == [] as String[]
+    }
+
+    def 'installers without a payload are not supported'() {
+        given:
+        installer.text = '#!/bin/bash\necho hello\n'
+
+        expect:
+        InstallerExtractor.read(installer) == null
+    }
+
+    def 'payload symlinks must stay within the staging directory'() {
+        given:
+        File links = new File(tempDirectory, 'links')
+        links.mkdirs()
+        Files.createSymbolicLink(new File(links, 'escape').toPath(), Paths.get('../../outside'))
+        File tar = new File(tempDirectory, 'links.tar')
+        run(links, 'tar', '-cf', tar.path, 'escape')
+        InstallerExtractor extractor = InstallerExtractor.read(writeInstaller(tar))
+
+        when:
+        extractor.extractPayload(new File(tempDirectory, 'staging'), 2)
+
+        then:
+        thrown(IOException)
+    }
+
+    def 'payload entries are not written through symlinks'() {
+        given:
+        File links = new File(tempDirectory, 'links')
+        new File(links, 'sub').mkdirs()
+        Files.createSymbolicLink(new File(links, 'link').toPath(), Paths.get('sub'))
+        File files = new File(tempDirectory, 'files')
+        new File(files, 'link').mkdirs()
+        new File(files, 'link/file').text = 'file'
+        File tar = new File(tempDirectory, 'links.tar')
+        run(links, 'tar', '-cf', tar.path, 'link', 'sub')
+        run(files, 'tar', '-rf', tar.path, 'link/file')
+        InstallerExtractor extractor = InstallerExtractor.read(writeInstaller(tar))
+
+        when:
+        extractor.extractPayload(new File(tempDirectory, 'staging'), 2)
+
+        then:
+        thrown(IOException)
+        !new File(tempDirectory, 'staging/sub/file').exists()
+    }
+
+    private File writeInstaller(File tar) {
+        File file = new File(tempDirectory, 'links.sh')
+        file.bytes = HEADER.replace('@LINE@', String.valueOf(HEADER.readLines().size() + 1)).bytes
+        file.append(tar.bytes)
+        return file
+    }
+
+    private static void run(File directory, String... command) {
+        Process process = new ProcessBuilder(command).directory(directory).inheritIO().start()
+        assert process.waitFor() == 0
+    }
+}
@@ -115,4 +115,59 @@ class MinicondaBuildTest extends Specification {
         thirdResult.task(":setupCondaBuild").outcome == TaskOutcome.SUCCESS
     }
 
+    def 'second condaBuild up to date'() {
+        when:
+        def runner = GradleRunner.create()
+                .forwardOutput()
+                .withProjectDir(tempDirectory)
+                .withArguments("--info", "--stacktrace", ":condaBuild")
+                .withPluginClasspath()
+
+        BuildResult firstResult = runner.build()
+        LOG.info(firstResult.getOutput())
+
+        BuildResult secondResult = runner.build()
+        LOG.info(secondResult.getOutput())
+
+        tempDirectory.toPath().resolve("example_project/__init__.py").toFile() << "\n# changed\n"
+        BuildResult thirdResult = runner.build()
+        LOG.info(thirdResult.getOutput())
+
+        then:
+        firstResult.task(":condaBuildCheck").outcome == TaskOutcome.SUCCESS
+        firstResult.task(":condaBuild").outcome == TaskOutcome.SUCCESS
+        secondResult.task(":condaBuildCheck").outcome == TaskOutcome.UP_TO_DATE
+        secondResult.task(":condaBuild").outcome == TaskOutcome.UP_TO_DATE
+        thirdResult.task(":condaBuild").outcome == TaskOutcome.SUCCESS
+    }
+
+    def 'condaBuild restored from local build cache'() {
+        when:
+        // outside the project, which is the recipe's source tree
+        File cacheDirectory = Files.createTempDirectory("miniconda-build-cache").toFile()
+        def runner = GradleRunner.create()
+                .forwardOutput()
+                .withProjectDir(tempDirectory)
+                .withArguments(
+                "--info", "--stacktrace", ":condaBuild",
+                "-Dorg.gradle.cache.tasks=true", "-Dorg.gradle.cache.tasks.directory=${cacheDirectory}")
+                .withPluginClasspath()
+
+        BuildResult firstResult = runner.build()
+        LOG.info(firstResult.getOutput())
+
+        tempDirectory.toPath().resolve("build/output").toFile().deleteDir()
+        BuildResult secondResult = runner.build()
+        LOG.info(secondResult.getOutput())
+
+        then:
+        firstResult.task(":condaBuild").outcome == TaskOutcome.SUCCESS
+        secondResult.task(":condaBuild").outcome == TaskOutcome.UP_TO_DATE
+        secondResult.getOutput().contains(":condaBuild FROM-CACHE")
+        FileUtils.listFiles(
+                tempDirectory.toPath().resolve("build/output").toFile(), ["tar.bz2"] as String[], true).size() == 1
+
+        cleanup:
+        cacheDirectory.deleteDir()
+    }
 }
@@ -76,4 +76,81 @@ class MinicondaFunctionalTest extends Specification {
         secondResult.task(":bootstrapPython").outcome == TaskOutcome.SKIPPED
         secondResult.task(":setupPython").outcome == TaskOutcome.UP_TO_DATE
     }
+
+    def 'setupPython installs from lock file'() {
+        buildFile << """
+            plugins {
+                id 'com.palantir.python.miniconda'
+            }
+
+            miniconda {
+                bootstrapDirectoryPrefix = new File('$minicondaDir/bootstrap')
+                buildEnvironmentDirectory = new File('$minicondaDir/env')
+                minicondaVersion = '3.18.3'
+                packages = ['ipython-notebook']
+                channels = ["${TestConstants.CHANNEL}"]
+                useLockFile = true
+            }
+        """
+
+        when:
+        def runner = GradleRunner.create()
+                .forwardOutput()
+                .withProjectDir(tempDirectory)
+                .withArguments("--info", "--stacktrace", ":setupPython")
+                .withPluginClasspath()
+
+        BuildResult result = runner.build()
+        String lock = new File(tempDirectory, 'conda.lock').text
+        BuildResult secondResult = runner.withArguments("--info", "--stacktrace", "cleanSetupPython", ":setupPython")
+                .build()
+
+        then:
+        result.task(":lockCondaEnvironment").outcome == TaskOutcome.SUCCESS
+        result.task(":setupPython").outcome == TaskOutcome.SUCCESS
+        lock.contains('@EXPLICIT')
+        secondResult.task(":lockCondaEnvironment").outcome == TaskOutcome.SKIPPED
+        secondResult.task(":setupPython").outcome == TaskOutcome.SUCCESS
+        new File(minicondaDir, 'env/bin/ipython').exists()
+    }
+
+    def 'installPipPackages installs from a local wheelhouse'() {
+        File source = new File(tempDirectory, 'hello')
+        source.mkdirs()
+        new File(source, 'setup.py') << """
+from setuptools import setup
+setup(name='hello', version='1.0', py_modules=['hello'])
+"""
+        new File(source, 'hello.py') << "GREETING = 'hello'\n"
+        buildFile << """
+            plugins {
+                id 'com.palantir.python.miniconda'
+            }
+
+            miniconda {
+                bootstrapDirectoryPrefix = new File('$minicondaDir/bootstrap')
+                buildEnvironmentDirectory = new File('$minicondaDir/env')
+                minicondaVersion = '3.18.3'
+                packages = ['python', 'pip', 'wheel', 'setuptools']
+                channels = ["${TestConstants.CHANNEL}"]
+                pipPackages = ['$source']
+                pipNoIndex = true
+            }
+        """
+
+        when:
+        def runner = GradleRunner.create()
+                .forwardOutput()
+                .withProjectDir(tempDirectory)
+                .withArguments("--info", "--stacktrace", ":installPipPackages")
+                .withPluginClasspath()
+
+        BuildResult result = runner.build()
+        BuildResult secondResult = runner.build()
+
+        then:
+        result.task(":installPipPackages").outcome == TaskOutcome.SUCCESS
+        new File(minicondaDir, 'bootstrap/wheelhouse').list().any { it.startsWith('hello-1.0') }
+        secondResult.task(":installPipPackages").outcome == TaskOutcome.UP_TO_DATE
+    }
 }
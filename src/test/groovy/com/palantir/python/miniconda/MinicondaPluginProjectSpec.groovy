@@ -17,6 +17,7 @@
 package com.palantir.python.miniconda
 
 import nebula.test.PluginProjectSpec
+import org.gradle.api.artifacts.Configuration
 
 /**
  * PluginProjectSpec test for the Miniconda plugin.
@@ -25,4 +26,65 @@ import nebula.test.PluginProjectSpec
  */
 class MinicondaPluginProjectSpec extends PluginProjectSpec {
     String pluginName = 'com.palantir.python.miniconda'
+
+    def 'configuration does not resolve the miniconda installer'() {
+        when:
+        project.apply plugin: pluginName
+        project.miniconda {
+            minicondaVersion = '3.18.3'
+            packages = ['python']
+        }
+        project.dependencies {
+            minicondaInstaller 'miniconda:Miniconda2:3.18.3:Linux-x86_64@sh'
+        }
+        project.evaluate()
+
+        then:
+        project.configurations.minicondaInstaller.state == Configuration.State.UNRESOLVED
+    }
+
+    def 'tasks do not hold on to the extension once configured'() {
+        when:
+        project.apply plugin: pluginName
+        project.miniconda {
+            minicondaVersion = '3.18.3'
+            packages = ['python']
+        }
+        project.evaluate()
+
+        then:
+        project.tasks.findAll { task -> getExtensionFields(task.getClass()) }.isEmpty()
+    }
+
+    def 'recipe sources are tracked without the build directory'() {
+        when:
+        project.apply plugin: pluginName
+        project.file('conda_recipe').mkdirs()
+        project.file('conda_recipe/meta.yaml').text = 'package:\n  name: example\nsource:\n  path: ..\n'
+        project.file('src').mkdirs()
+        project.file('src/example.py').text = 'print(1)\n'
+        project.file('build').mkdirs()
+        project.file('build/output.txt').text = 'built\n'
+        project.miniconda {
+            minicondaVersion = '3.18.3'
+            packages = ['python']
+        }
+        project.evaluate()
+        Set<File> inputs = project.tasks.condaBuild.inputs.files.files
+
+        then:
+        inputs.contains(project.file('src/example.py'))
+        inputs.contains(project.file('conda_recipe/meta.yaml'))
+        !inputs.contains(project.file('build/output.txt'))
+    }
+
+    private static List<String> getExtensionFields(Class<?> type) {
+        List<String> fields = []
+        for (Class<?> current = type; current != null; current = current.superclass) {
+            fields.addAll(current.declaredFields
+                    .findAll { MinicondaExtension.isAssignableFrom(it.type) }
+                    .collect { "${current.simpleName}.${it.name}" as String })
+        }
+        return fields
+    }
 }
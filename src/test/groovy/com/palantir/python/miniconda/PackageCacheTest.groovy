@@ -0,0 +1,151 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link PackageCache}.
+ *
+ * @author agent
+ */
+class PackageCacheTest extends Specification {
+    private static final String LIBRARY = 'x' * 8192
+
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+    private File root = new File(tempDirectory, 'pkgs')
+    private PackageCache cache = new PackageCache(root)
+
+    def setup() {
+        addPackage('six-1.10.0-py27_0', LIBRARY)
+        addPackage('six-1.10.0-py35_0', LIBRARY)
+        addPackage('zlib-1.2.8-3', 'z' * 8192)
+    }
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'hard links identical files of different packages'() {
+        when:
+        long freed = cache.deduplicate()
+
+        then:
+        freed == 8192L
+        Files.isSameFile(
+                new File(root, 'six-1.10.0-py27_0/lib/library.so').toPath(),
+                new File(root, 'six-1.10.0-py35_0/lib/library.so').toPath())
+        !Files.isSameFile(
+                new File(root, 'six-1.10.0-py27_0/lib/library.so').toPath(),
+                new File(root, 'zlib-1.2.8-3/lib/library.so').toPath())
+        new File(root, 'six-1.10.0-py35_0/lib/library.so').text == LIBRARY
+    }
+
+    def 'only deduplicates packages extracted since the last run'() {
+        given:
+        cache.deduplicate()
+
+        when:
+        addPackage('six-1.10.0-py36_0', LIBRARY)
+
+        then:
+        cache.deduplicate() == 8192L
+        cache.deduplicate() == 0L
+        Files.isSameFile(
+                new File(root, 'six-1.10.0-py27_0/lib/library.so').toPath(),
+                new File(root, 'six-1.10.0-py36_0/lib/library.so').toPath())
+    }
+
+    def 'records the packages of an environment as used'() {
+        given:
+        File environment = new File(tempDirectory, 'environment')
+        new File(environment, 'conda-meta').mkdirs()
+        new File(environment, 'conda-meta/zlib-1.2.8-3.json').text = '{}'
+        new File(environment, 'conda-meta/history').text = ''
+
+        expect:
+        cache.touch(environment) == ['zlib-1.2.8-3'] as Set
+        new File(root, '.last-used/zlib-1.2.8-3').isFile()
+    }
+
+    def 'evicts least recently used packages beyond the size limit'() {
+        given:
+        setLastUsed('six-1.10.0-py27_0', 1000L)
+        setLastUsed('six-1.10.0-py35_0', 2000L)
+        setLastUsed('zlib-1.2.8-3', 3000L)
+
+        when:
+        int evicted = cache.prune(1, ['six-1.10.0-py27_0'] as Set)
+
+        then:
+        evicted == 1
+        new File(root, 'six-1.10.0-py27_0').isDirectory()
+        !new File(root, 'six-1.10.0-py35_0').exists()
+        !new File(root, 'six-1.10.0-py35_0.tar.bz2').exists()
+        new File(root, 'zlib-1.2.8-3').isDirectory()
+    }
+
+    def 'skips packages that are not completely extracted'() {
+        given:
+        addPackage('six-1.10.0-py36_0', LIBRARY)
+        new File(root, 'six-1.10.0-py36_0/info/repodata_record.json').delete()
+        addPackage('six-1.10.0-py34_0', LIBRARY)
+        new File(root, 'six-1.10.0-py34_0/info/repodata_record.json').delete()
+        new File(root, 'six-1.10.0-py34_0/info/files').text = 'lib/library.so\n'
+        new File(root, 'urls.txt').text = 'https://repo.continuum.io/pkgs/free/linux-64/six-1.10.0-py34_0.tar.bz2\n'
+        setLastUsed('six-1.10.0-py27_0', 4000L)
+        setLastUsed('six-1.10.0-py35_0', 3000L)
+        setLastUsed('zlib-1.2.8-3', 2000L)
+        setLastUsed('six-1.10.0-py34_0', 1000L)
+        setLastUsed('six-1.10.0-py36_0', 0L)
+
+        when:
+        cache.deduplicate()
+        cache.prune(1, [] as Set)
+
+        then:
+        new File(root, 'six-1.10.0-py36_0').isDirectory()
+        !Files.isSameFile(
+                new File(root, 'six-1.10.0-py27_0/lib/library.so').toPath(),
+                new File(root, 'six-1.10.0-py36_0/lib/library.so').toPath())
+        !new File(root, 'six-1.10.0-py34_0').exists()
+    }
+
+    def 'never evicts without a size limit'() {
+        expect:
+        cache.prune(0, [] as Set) == 0
+    }
+
+    private void addPackage(String distribution, String library) {
+        File directory = new File(root, distribution)
+        new File(directory, 'info').mkdirs()
+        new File(directory, 'lib').mkdirs()
+        new File(directory, 'info/index.json').text = '{"subdir": "linux-64"}'
+        new File(directory, 'info/repodata_record.json').text = '{"subdir": "linux-64"}'
+        new File(directory, 'lib/library.so').text = library
+        new File(root, distribution + '.tar.bz2').bytes = new byte[600 * 1024]
+    }
+
+    private void setLastUsed(String distribution, long millis) {
+        File marker = new File(root, '.last-used/' + distribution)
+        marker.parentFile.mkdirs()
+        marker.createNewFile()
+        Files.setLastModifiedTime(marker.toPath(), FileTime.fromMillis(millis))
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda
+
+import java.nio.file.Files
+import java.nio.file.Path
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+/**
+ * Unit tests for {@link Trash}.
+ *
+ * @author agent
+ */
+class TrashTest extends Specification {
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+    private Path environment = new File(tempDirectory, 'env').toPath()
+    private Path trash = new File(tempDirectory, '.miniconda-trash').toPath()
+
+    def setup() {
+        Files.createDirectories(environment.resolve('lib/python2.7/site-packages'))
+        environment.resolve('lib/python2.7/site-packages/six.py').toFile().text = 'six'
+        environment.resolve('bin').toFile().mkdirs()
+        environment.resolve('bin/python').toFile().text = 'python'
+    }
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    def 'discarded trees are moved out of the way and deleted'() {
+        given:
+        File outside = new File(tempDirectory, 'outside')
+        outside.text = 'keep'
+        Files.createSymbolicLink(environment.resolve('bin/outside'), outside.toPath())
+
+        when:
+        def deletion = Trash.discard(environment)
+
+        then:
+        !Files.exists(environment)
+
+        when:
+        deletion.get()
+
+        then:
+        trash.toFile().list() == [] as String[]
+        outside.text == 'keep'
+    }
+
+    def 'missing trees are ignored'() {
+        expect:
+        Trash.discard(new File(tempDirectory, 'missing').toPath()).isDone()
+    }
+
+    def 'trees left in the trash are deleted by the next discard'() {
+        given:
+        Files.createDirectories(trash.resolve('env-interrupted/lib'))
+        trash.resolve('env-interrupted/lib/file').toFile().text = 'left over'
+
+        when:
+        Trash.discard(environment).get()
+
+        then:
+        new PollingConditions(timeout: 10).eventually {
+            assert !Files.exists(trash.resolve('env-interrupted'))
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks
+
+import com.palantir.python.miniconda.CondaRecipe
+import java.nio.file.Files
+import java.util.concurrent.CopyOnWriteArrayList
+import org.gradle.api.GradleException
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link CondaBuildScheduler}.
+ *
+ * @author agent
+ */
+class CondaBuildSchedulerTest extends Specification {
+    private File tempDirectory = Files.createTempDirectory("miniconda").toFile()
+
+    def cleanup() {
+        tempDirectory.deleteDir()
+    }
+
+    private CondaRecipe recipe(String name, List<String> requirements) {
+        File directory = new File(tempDirectory, name)
+        directory.mkdirs()
+        new File(directory, 'meta.yaml').text = """\
+package:
+  name: ${name}
+  version: "1.0.0"
+
+requirements:
+  build:
+    - python
+${requirements.collect { "    - ${it}" }.join('\n')}
+"""
+        return CondaRecipe.parse(directory)
+    }
+
+    def 'builds recipes after their requirements'() {
+        when:
+        def recipes = [recipe('app', ['lib']), recipe('lib', ['base']), recipe('base', []), recipe('other', [])]
+        def scheduler = new CondaBuildScheduler(recipes)
+        def order = new CopyOnWriteArrayList<String>()
+        scheduler.buildAll(4, { CondaRecipe recipe, int index ->
+            order.add(recipe.packageName)
+        } as CondaBuildScheduler.RecipeBuild)
+
+        then:
+        scheduler.getDependencies(0) == [1] as Set
+        order.size() == 4
+        order.indexOf('base') < order.indexOf('lib')
+        order.indexOf('lib') < order.indexOf('app')
+    }
+
+    def 'rejects cyclic requirements'() {
+        when:
+        new CondaBuildScheduler([recipe('a', ['b']), recipe('b', ['a'])])
+
+        then:
+        thrown(GradleException)
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks
+
+import com.palantir.python.miniconda.CondaWorker
+import com.palantir.python.miniconda.FakeCondaInstall
+import org.gradle.api.GradleException
+import spock.lang.Requires
+import spock.lang.Specification
+
+/**
+ * Unit tests for running {@link CondaCommand}s in the conda worker, against a stand-in for conda.
+ *
+ * @author agent
+ */
+@Requires({ FakeCondaInstall.isSupported() })
+class CondaCommandTest extends Specification {
+    private FakeCondaInstall install = new FakeCondaInstall()
+
+    def cleanup() {
+        CondaWorker.stopAll()
+        install.delete()
+    }
+
+    def 'forwards captured output'() {
+        given:
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+
+        when:
+        int exitValue = command('echo', 'hello').setStandardOutput(output).execute(null)
+
+        then:
+        exitValue == 0
+        output.toString('UTF-8') == 'hello\n'
+    }
+
+    def 'fails with the error output for non-zero exit values'() {
+        when:
+        command('fail', '4').execute(null)
+
+        then:
+        GradleException e = thrown()
+        e.message.contains('non-zero exit value 4')
+        e.message.contains('failed with 4')
+    }
+
+    def 'returns ignored non-zero exit values'() {
+        expect:
+        command('fail', '5').setIgnoreExitValue(true).execute(null) == 5
+    }
+
+    def 'does not rerun a command whose output was already forwarded'() {
+        given:
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+
+        when:
+        command('crash').setStandardOutput(output).execute(null)
+
+        then:
+        thrown(GradleException)
+        output.toString('UTF-8') == 'partial\n'
+    }
+
+    private CondaCommand command(String... args) {
+        return new CondaCommand(install.bootstrapDirectory, true).args(args)
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2026 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.python.miniconda.tasks
+
+import com.palantir.python.miniconda.CondaTimings
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link CondaOutputPhases}, {@link OutputTail} and the report of {@link CondaTimings}.
+ *
+ * @author agent
+ */
+class CondaOutputPhasesTest extends Specification {
+    private CondaTimings timings = new CondaTimings(':app')
+
+    def 'splits conda json progress into solve, fetch and link'() {
+        given:
+        CondaOutputPhases output = CondaOutputPhases.forInstall(timings, ':setupPython', 'create', null)
+
+        when:
+        write(output, '{"fetch": "python-2.7.13-0", "finished": false}\u0000'
+                + '{"fetch": "python-2.7.13-0", "finished": true}\u0000'
+                + 'Linking packages ...\n'
+                + '{"success": true}')
+        output.finish()
+
+        then:
+        timings.entries*.phase == ['solve', 'fetch', 'link']
+        timings.entries*.task.unique() == [':setupPython']
+        output.tail.endsWith('{"success": true}')
+    }
+
+    def 'records the whole command when conda prints no markers'() {
+        given:
+        ByteArrayOutputStream delegate = new ByteArrayOutputStream()
+        CondaOutputPhases output = CondaOutputPhases.forInstall(timings, ':setupPython', 'create', delegate)
+
+        when:
+        write(output, 'nothing to see\n')
+        output.finish()
+
+        then:
+        timings.entries*.phase == ['create']
+        delegate.toString('UTF-8') == 'nothing to see\n'
+        output.tail == 'nothing to see\n'
+    }
+
+    def 'splits conda build output into setup, build and test per recipe'() {
+        given:
+        CondaOutputPhases output = CondaOutputPhases.forBuild(timings, ':condaBuild', 'recipe', null)
+
+        when:
+        write(output, 'Solving environment\nBUILD START: x-1.0-0\ncompiling\nTEST START: x-1.0-0\nTEST END\n')
+        output.finish()
+
+        then:
+        timings.entries*.phase == ['setup', 'build', 'test']
+        timings.entries*.subject.unique() == ['recipe']
+    }
+
+    def 'keeps only the tail of long output'() {
+        given:
+        CondaOutputPhases output = CondaOutputPhases.forBuild(timings, ':condaBuild', 'recipe', null)
+        String line = 'x' * 1000 + '\n'
+
+        when:
+        1000.times { write(output, line) }
+        write(output, 'TEST START: x-1.0-0\nlast line\n')
+        output.finish()
+
+        then:
+        output.tail.length() == OutputTail.DEFAULT_CAPACITY
+        output.tail.endsWith('TEST START: x-1.0-0\nlast line\n')
+        timings.entries*.phase == ['setup', 'test']
+    }
+
+    def 'output tail returns the last line'() {
+        given:
+        OutputTail tail = new OutputTail(32)
+
+        when:
+        write(tail, 'warning: something long\nconda-build 2.1.5\n')
+
+        then:
+        tail.toString() == 'omething long\nconda-build 2.1.5\n'
+        tail.lastLine == 'conda-build 2.1.5'
+    }
+
+    def 'writes json and html reports'() {
+        given:
+        File directory = Files.createTempDirectory('miniconda').toFile()
+        timings.record(':bootstrapPython', 'download', null, 0L, 42L)
+
+        when:
+        timings.writeReport(directory)
+
+        then:
+        String json = new File(directory, 'timings.json').text
+        json.contains('"project": ":app"')
+        json.contains('{"task": ":bootstrapPython", "phase": "download", "subject": null, "start": 0, '
+                + '"durationMillis": 42}')
+        new File(directory, 'timings.html').text.contains('<td>download</td><td>42</td>')
+
+        cleanup:
+        directory.deleteDir()
+    }
+
+    private static void write(OutputStream output, String text) {
+        output.write(text.getBytes(StandardCharsets.UTF_8))
+    }
+}